@@ -0,0 +1,122 @@
+package spring.security.temp.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// a burst of concurrent requests served by Tomcat's default 200 platform threads vs one virtual thread per
+// request. task=sleep blocks each request for blockingMs without holding anything, the best case for virtual
+// threads; task=jdbc runs a blockingMs query on a connection from a Hikari pool of poolSize (the app's default
+// DB_POOL_SIZE), which is what signup does, and the pool caps both models at poolSize / blockingMs requests per
+// second. Runs on in-memory H2 by default; point -p url=jdbc:postgresql://... (with -p user/-p password) at a
+// real database to block on the network instead of inside H2
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ThreadingModelBenchmark {
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"sleep", "jdbc"})
+    public String task;
+
+    @Param({"1000", "5000"})
+    public int concurrentRequests;
+
+    @Param({"20"})
+    public int blockingMs;
+
+    @Param({"20"})
+    public int poolSize;
+
+    @Param({"jdbc:h2:mem:threads;MODE=PostgreSQL;DB_CLOSE_DELAY=-1"})
+    public String url;
+
+    @Param({"sa"})
+    public String user;
+
+    @Param({""})
+    public String password;
+
+    private ExecutorService executor;
+    private HikariDataSource dataSource;
+    private String query;
+
+    @Setup
+    public void setup() throws SQLException {
+        executor = threads.equals("virtual")
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(200);
+        if (!task.equals("jdbc")) {
+            return;
+        }
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(url);
+        config.setUsername(user);
+        config.setPassword(password);
+        config.setMaximumPoolSize(poolSize);
+        config.setMinimumIdle(poolSize);
+        // the app gives up after DB_POOL_TIMEOUT_MS (5 s), which the tail of a 5000 request burst would hit;
+        // here every request waits its turn so the throughput is measured rather than the failures
+        config.setConnectionTimeout(TimeUnit.MINUTES.toMillis(1));
+        dataSource = new HikariDataSource(config);
+        if (url.startsWith("jdbc:postgresql")) {
+            query = "select pg_sleep(" + blockingMs / 1000.0 + ")";
+        } else {
+            try (Connection connection = dataSource.getConnection(); Statement ddl = connection.createStatement()) {
+                ddl.execute("create alias if not exists bench_sleep for 'java.lang.Thread.sleep(long)'");
+            }
+            query = "call bench_sleep(" + blockingMs + ")";
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    // one op is a whole burst, so ops/s times concurrentRequests is the request throughput
+    @Benchmark
+    public int burst() throws Exception {
+        List<Future<Integer>> futures = new ArrayList<>(concurrentRequests);
+        for (int i = 0; i < concurrentRequests; i++) {
+            futures.add(executor.submit(task.equals("jdbc") ? this::query : this::sleep));
+        }
+        int completed = 0;
+        for (Future<Integer> future : futures) {
+            completed += future.get();
+        }
+        return completed;
+    }
+
+    private Integer sleep() throws InterruptedException {
+        Thread.sleep(blockingMs);
+        return 1;
+    }
+
+    private Integer query() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query);
+             ResultSet ignored = statement.executeQuery()) {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package spring.security.temp.email;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmailTemplateBenchmark {
+    private static final String NAME = "Adwoa";
+    private static final String LINK = "http://localhost:8080/api/v1/registration/confirm?token=0b3f8a4e-5c1d-4a8e-9d0f-6b7c8e9f0a1b";
+
+    private EmailTemplates emailTemplates;
+    private CompiledTemplate verification;
+    private Map<String, String> values;
+    private StringBuilder buffer;
+
+    @Setup
+    public void setup() throws IOException {
+        emailTemplates = new EmailTemplates();
+        values = Map.of("name", NAME, "link", LINK);
+        verification = CompiledTemplate.compile(new String(
+                EmailTemplates.class.getClassLoader().getResourceAsStream(EmailTemplate.VERIFICATION.getPath()).readAllBytes()));
+        buffer = new StringBuilder(8192);
+        if (!emailTemplates.render(EmailTemplate.VERIFICATION, values).equals(EmailBuilder.buildVerificationEmail(NAME, LINK))) {
+            throw new IllegalStateException("verification template no longer matches the builder output");
+        }
+    }
+
+    @Benchmark
+    public String concatenationBuilder() {
+        return EmailBuilder.buildVerificationEmail(NAME, LINK);
+    }
+
+    @Benchmark
+    public String compiledTemplate() {
+        return emailTemplates.render(EmailTemplate.VERIFICATION, values);
+    }
+
+    @Benchmark
+    public int compiledTemplateReusedBuffer() {
+        buffer.setLength(0);
+        verification.renderTo(buffer, values);
+        return buffer.length();
+    }
+}
@@ -0,0 +1,193 @@
+package spring.security.temp.logging;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.MDC;
+import org.springframework.boot.logging.logback.StructuredLogEncoder;
+import org.springframework.core.env.Environment;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// four request threads logging a signin line: println on a shared autoflushing PrintStream (what System.out did),
+// the structured JSON encoder writing on the caller's thread, and the same encoder behind the async appender.
+// Everything goes to a temp file so each line is a real write; sample time shows what the callers wait for, and
+// every iteration prints how many lines were logged, written and dropped, so the async latencies are read next
+// to what they cost. pauseMicros=0 logs back to back, which outruns any single writer and saturates the queue; a
+// pause between calls (outside the measured time) paces the four callers to at most 4000 lines/s, below what the
+// writer keeps up with, where the async appender has to keep every line
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Threads(4)
+@Fork(1)
+public class LoggingBenchmark {
+    @Param({"println", "sync", "async"})
+    public String appender;
+
+    @Param({"0", "1000"})
+    public long pauseMicros;
+
+    private final LongAdder calls = new LongAdder();
+    private long loggedBefore;
+    private long writtenBefore;
+    private Path file;
+    private LineCountingOutputStream sink;
+    private PrintStream out;
+    private LoggerContext loggerContext;
+    private AsyncAppender async;
+    private org.slf4j.Logger logger;
+
+    @State(Scope.Thread)
+    public static class Request {
+        final String email = "user-" + Thread.currentThread().threadId() + "@example.com";
+
+        @Setup
+        public void setup() {
+            MDC.put(RequestIdFilter.REQUEST_ID_KEY, UUID.randomUUID().toString());
+        }
+
+        // think time between requests, not part of the sampled latency
+        @Setup(org.openjdk.jmh.annotations.Level.Invocation)
+        public void pause(LoggingBenchmark benchmark) {
+            if (benchmark.pauseMicros > 0) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(benchmark.pauseMicros));
+            }
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("logging-benchmark", ".log");
+        sink = new LineCountingOutputStream(Files.newOutputStream(file));
+        if (appender.equals("println")) {
+            out = new PrintStream(new BufferedOutputStream(sink, 8192), true, StandardCharsets.UTF_8);
+            return;
+        }
+
+        loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(MDC.getMDCAdapter()); // the request id is put through the global MDC
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("spring.application.name", "temp")
+                .withProperty("logging.structured.json.customizer", TokenRedactingJsonMembersCustomizer.class.getName());
+        loggerContext.putObject(Environment.class.getName(), environment);
+
+        StructuredLogEncoder encoder = new StructuredLogEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setFormat("ecs");
+        encoder.start();
+        OutputStreamAppender<ILoggingEvent> output = new OutputStreamAppender<>();
+        output.setContext(loggerContext);
+        output.setEncoder(encoder);
+        output.setOutputStream(sink);
+        output.start();
+
+        Appender<ILoggingEvent> root = output;
+        if (appender.equals("async")) {
+            // same settings as logback-spring.xml
+            async = new AsyncAppender();
+            async.setContext(loggerContext);
+            async.setQueueSize(8192);
+            async.setDiscardingThreshold(1638);
+            async.setNeverBlock(true);
+            async.addAppender(output);
+            async.start();
+            root = async;
+        }
+        Logger rootLogger = loggerContext.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        rootLogger.setLevel(Level.INFO);
+        rootLogger.addAppender(root);
+        logger = loggerContext.getLogger("spring.security.temp.services.AuthenticationService");
+    }
+
+    // the async worker takes lines off the queue in batches, so it is given time to write what it took before
+    // counting; every line of the iteration is then either written or dropped
+    @TearDown(org.openjdk.jmh.annotations.Level.Iteration)
+    public void report() throws InterruptedException {
+        long written = sink.lines();
+        if (async != null) {
+            long previous;
+            do {
+                previous = written;
+                Thread.sleep(50);
+                written = sink.lines();
+            } while (async.getNumberOfElementsInQueue() > 0 || written != previous);
+        }
+        long logged = calls.sum() - loggedBefore;
+        long dropped = logged - (written - writtenBefore);
+        System.out.printf("%nlines logged %d, written %d, dropped %d (%.1f%%)%n",
+                logged, written - writtenBefore, dropped, logged == 0 ? 0.0 : 100.0 * dropped / logged);
+        loggedBefore += logged;
+        writtenBefore = written;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (out != null) {
+            out.close();
+        } else {
+            loggerContext.stop(); // drains the async queue
+            sink.close();
+        }
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void signin(Request request) {
+        calls.increment();
+        if (out != null) {
+            out.println("User: " + request.email + " signed in, request " + MDC.get(RequestIdFilter.REQUEST_ID_KEY));
+        } else {
+            logger.info("user {} signed in", request.email);
+        }
+    }
+
+    private static final class LineCountingOutputStream extends FilterOutputStream {
+        private final LongAdder lines = new LongAdder();
+
+        private LineCountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                if (bytes[i] == '\n') {
+                    lines.increment();
+                }
+            }
+            out.write(bytes, offset, length);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (b == '\n') {
+                lines.increment();
+            }
+            out.write(b);
+        }
+
+        long lines() {
+            return lines.sum();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package spring.security.temp.models;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserMapperBenchmark {
+    private User user;
+
+    @Setup
+    public void setup() {
+        user = User.builder()
+                .id(42L)
+                .email("bench@example.com")
+                .firstName("Bench")
+                .lastName("Mark")
+                .build();
+    }
+
+    @Benchmark
+    public UserResponseDto toDTo() {
+        return UserMapper.toDTo(user);
+    }
+}
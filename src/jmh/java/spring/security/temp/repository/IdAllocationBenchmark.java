@@ -0,0 +1,162 @@
+package spring.security.temp.repository;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// the statements Hibernate sends for signups (a user row plus its confirmation token), with
+// allocationSize = 1 (nextval before every insert) vs pooled ids, and pooled ids plus JDBC batching.
+// runs on in-memory H2 by default, where a round-trip is nearly free; point -p url=jdbc:postgresql://...
+// (with -p user/-p password) at a real database to see the network cost the pooled sequences remove
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdAllocationBenchmark {
+    private static final int BLOCK_SIZE = 50;
+
+    @Param({"jdbc:h2:mem:ids;MODE=PostgreSQL;DB_CLOSE_DELAY=-1"})
+    public String url;
+
+    @Param({"sa"})
+    public String user;
+
+    @Param({""})
+    public String password;
+
+    @Param({"per-row", "pooled", "pooled-batched"})
+    public String allocation;
+
+    // 1 is a single signup, larger values are the bulk paths (admin import, outbox batches)
+    @Param({"1", "500"})
+    public int signups;
+
+    private Connection connection;
+    private PreparedStatement nextUserId;
+    private PreparedStatement nextTokenId;
+    private PreparedStatement insertUser;
+    private PreparedStatement insertToken;
+    private long userHi;
+    private long userNext;
+    private long tokenHi;
+    private long tokenNext;
+
+    @Setup
+    public void setup() throws SQLException {
+        connection = DriverManager.getConnection(url + (url.startsWith("jdbc:postgresql") ? "?reWriteBatchedInserts=true" : ""), user, password);
+        int increment = allocation.equals("per-row") ? 1 : BLOCK_SIZE;
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("drop table if exists bench_token");
+            ddl.execute("drop table if exists bench_user");
+            ddl.execute("drop sequence if exists bench_user_sequence");
+            ddl.execute("drop sequence if exists bench_token_sequence");
+            ddl.execute("create sequence bench_user_sequence start with " + increment + " increment by " + increment);
+            ddl.execute("create sequence bench_token_sequence start with " + increment + " increment by " + increment);
+            ddl.execute("create table bench_user (id bigint primary key, email varchar(255) not null, password varchar(255) not null, "
+                    + "first_name varchar(255) not null, last_name varchar(255) not null)");
+            ddl.execute("create table bench_token (id bigint primary key, token varchar(255) not null, local_date_time timestamp not null, "
+                    + "expires_at timestamp not null, app_user_id bigint not null references bench_user)");
+        }
+        connection.setAutoCommit(false);
+        nextUserId = connection.prepareStatement("select nextval('bench_user_sequence')");
+        nextTokenId = connection.prepareStatement("select nextval('bench_token_sequence')");
+        insertUser = connection.prepareStatement("insert into bench_user (id, email, password, first_name, last_name) values (?, ?, ?, ?, ?)");
+        insertToken = connection.prepareStatement("insert into bench_token (id, token, local_date_time, expires_at, app_user_id) values (?, ?, ?, ?, ?)");
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() throws SQLException {
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("delete from bench_token");
+            ddl.execute("delete from bench_user");
+        }
+        connection.commit();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    // one op is one transaction holding all the signups
+    @Benchmark
+    public int signup() throws SQLException {
+        boolean batched = allocation.equals("pooled-batched");
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Timestamp expires = Timestamp.valueOf(LocalDateTime.now().plusMinutes(15));
+        for (int i = 0; i < signups; i++) {
+            long userId = nextUserId();
+            insertUser.setLong(1, userId);
+            insertUser.setString(2, "user" + userId + "@example.com");
+            insertUser.setString(3, "$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z5jmF5G3W7Dx6lm6K3Q5bU1e");
+            insertUser.setString(4, "Bench");
+            insertUser.setString(5, "Mark");
+            insertToken.setLong(1, nextTokenId());
+            insertToken.setString(2, UUID.randomUUID().toString());
+            insertToken.setTimestamp(3, now);
+            insertToken.setTimestamp(4, expires);
+            insertToken.setLong(5, userId);
+            if (batched) {
+                insertUser.addBatch();
+                insertToken.addBatch();
+                if ((i + 1) % BLOCK_SIZE == 0) {
+                    flush();
+                }
+            } else {
+                insertUser.executeUpdate();
+                insertToken.executeUpdate();
+            }
+        }
+        if (batched) {
+            flush();
+        }
+        connection.commit();
+        return signups;
+    }
+
+    // order_inserts groups the statements by table, so the users go out before the tokens that reference them
+    private void flush() throws SQLException {
+        insertUser.executeBatch();
+        insertToken.executeBatch();
+    }
+
+    private long nextUserId() throws SQLException {
+        if (allocation.equals("per-row")) {
+            return nextval(nextUserId);
+        }
+        if (userNext >= userHi) {
+            userHi = nextval(nextUserId);
+            userNext = userHi - BLOCK_SIZE;
+        }
+        return ++userNext;
+    }
+
+    private long nextTokenId() throws SQLException {
+        if (allocation.equals("per-row")) {
+            return nextval(nextTokenId);
+        }
+        if (tokenNext >= tokenHi) {
+            tokenHi = nextval(nextTokenId);
+            tokenNext = tokenHi - BLOCK_SIZE;
+        }
+        return ++tokenNext;
+    }
+
+    private static long nextval(PreparedStatement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+}
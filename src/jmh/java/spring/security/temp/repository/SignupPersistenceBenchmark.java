@@ -0,0 +1,146 @@
+package spring.security.temp.repository;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.*;
+import spring.security.temp.models.Role;
+import spring.security.temp.models.User;
+import spring.security.temp.token.ConfirmationToken;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// the signup write path through Hibernate itself: the mapped User and ConfirmationToken entities persisted with
+// the app's settings, per-row ids (sequences stepping by 1, which increment_size_mismatch_strategy=fix makes
+// Hibernate follow, as allocationSize = 1 did) vs pooled ids, and pooled ids plus JDBC batching. Runs on in-memory
+// H2 by default; on Postgres (-p url=jdbc:postgresql://... with -p user/-p password) the tables live in their own
+// schema, so the app's database can be used without touching its data
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(3)
+public class SignupPersistenceBenchmark {
+    private static final String SCHEMA = "signup_benchmark";
+    private static final int BATCH_SIZE = 50;
+
+    @Param({"jdbc:h2:mem:signups;MODE=PostgreSQL;DB_CLOSE_DELAY=-1"})
+    public String url;
+
+    @Param({"sa"})
+    public String user;
+
+    @Param({""})
+    public String password;
+
+    @Param({"per-row", "pooled", "pooled-batched"})
+    public String allocation;
+
+    // 1 is a single signup, larger values are the bulk paths (admin import, outbox batches)
+    @Param({"1", "2000"})
+    public int signups;
+
+    private SessionFactory sessionFactory;
+    private long emails;
+
+    @Setup
+    public void setup() throws SQLException {
+        if (url.startsWith("jdbc:postgresql")) {
+            try (Connection connection = DriverManager.getConnection(url, user, password);
+                 Statement ddl = connection.createStatement()) {
+                ddl.execute("create schema if not exists " + SCHEMA);
+            }
+        }
+        // creates the tables and the sequences, stepping by the mapped allocationSize
+        sessionFactory(true).close();
+        sessionFactory = sessionFactory(false);
+        if (allocation.equals("per-row")) {
+            sessionFactory.inTransaction(session -> {
+                session.createNativeMutationQuery("alter sequence user_sequence increment by 1").executeUpdate();
+                session.createNativeMutationQuery("alter sequence token_sequence increment by 1").executeUpdate();
+            });
+            // the mismatch strategy reads the increments when the factory is built
+            sessionFactory.close();
+            sessionFactory = sessionFactory(false);
+        }
+    }
+
+    // truncate on Postgres, deleted rows would leave dead tuples behind that slow every later iteration
+    @Setup(Level.Iteration)
+    public void truncate() {
+        sessionFactory.inTransaction(session -> {
+            if (url.startsWith("jdbc:postgresql")) {
+                session.createNativeMutationQuery("truncate confirmation_token, users cascade").executeUpdate();
+            } else {
+                session.createNativeMutationQuery("delete from confirmation_token").executeUpdate();
+                session.createNativeMutationQuery("delete from users").executeUpdate();
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    // one op is one transaction holding all the signups, flushed and cleared every batch like the import does
+    @Benchmark
+    public int signup() {
+        sessionFactory.inTransaction(session -> {
+            LocalDateTime now = LocalDateTime.now();
+            for (int i = 0; i < signups; i++) {
+                User user = User.builder()
+                        .email("user" + emails++ + "@example.com")
+                        .password("$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z5jmF5G3W7Dx6lm6K3Q5bU1e")
+                        .firstName("Bench")
+                        .lastName("Mark")
+                        .build();
+                session.persist(user);
+                session.persist(new ConfirmationToken(UUID.randomUUID().toString(), now, now.plusMinutes(15), user));
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    flush(session);
+                }
+            }
+        });
+        return signups;
+    }
+
+    private static void flush(Session session) {
+        session.flush();
+        session.clear();
+    }
+
+    // the JPA settings from application.properties that shape the statements
+    private SessionFactory sessionFactory(boolean createSchema) {
+        boolean postgres = url.startsWith("jdbc:postgresql");
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(Role.class)
+                .addAnnotatedClass(ConfirmationToken.class)
+                .setProperty(AvailableSettings.JAKARTA_JDBC_URL,
+                        postgres ? url + "?currentSchema=" + SCHEMA + "&reWriteBatchedInserts=true" : url)
+                .setProperty(AvailableSettings.JAKARTA_JDBC_USER, user)
+                .setProperty(AvailableSettings.JAKARTA_JDBC_PASSWORD, password)
+                .setProperty(AvailableSettings.PHYSICAL_NAMING_STRATEGY,
+                        "org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy")
+                .setProperty(AvailableSettings.SEQUENCE_INCREMENT_SIZE_MISMATCH_STRATEGY, "fix")
+                .setProperty(AvailableSettings.JAKARTA_VALIDATION_MODE, "none");
+        if (allocation.equals("pooled-batched")) {
+            configuration
+                    .setProperty(AvailableSettings.STATEMENT_BATCH_SIZE, BATCH_SIZE)
+                    .setProperty(AvailableSettings.ORDER_INSERTS, true);
+        }
+        if (createSchema) {
+            configuration.setProperty(AvailableSettings.JAKARTA_HBM2DDL_DATABASE_ACTION, "drop-and-create");
+        }
+        return configuration.buildSessionFactory();
+    }
+}
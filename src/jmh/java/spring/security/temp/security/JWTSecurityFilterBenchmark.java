@@ -0,0 +1,54 @@
+package spring.security.temp.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.util.ReflectionTestUtils;
+import spring.security.temp.models.User;
+
+import java.util.concurrent.TimeUnit;
+
+// full filter pass for an authenticated request, the user lookup is an in-memory stub
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JWTSecurityFilterBenchmark {
+    @Param({"false", "true"})
+    public boolean statelessAuth;
+
+    private JWTSecurityFilter filter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private final FilterChain chain = (req, res) -> { };
+
+    @Setup
+    public void setup() {
+        JwtService jwtService = JwtFixtures.jwtService();
+        User user = JwtFixtures.user();
+        UserDetailsService userDetailsService = username -> user;
+        UserStatusRegistry userStatusRegistry = new UserStatusRegistry();
+        filter = new JWTSecurityFilter(userDetailsService, jwtService, userStatusRegistry,
+                JwtFixtures.tokenRevocationList(100_000), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(filter, "statelessAuth", statelessAuth);
+
+        request = new MockHttpServletRequest("GET", "/api/v1/users/me");
+        request.setServletPath("/api/v1/users/me");
+        request.addHeader("Authorization", "Bearer " + jwtService.generateToken(user));
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public Object doFilterInternal() throws Exception {
+        filter.doFilter(request, response, chain);
+        Object authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+}
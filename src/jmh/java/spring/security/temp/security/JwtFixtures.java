@@ -0,0 +1,102 @@
+package spring.security.temp.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import spring.security.temp.models.User;
+import spring.security.temp.repository.TokenRevocationRepository;
+
+import java.lang.reflect.Proxy;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.List;
+
+// wires the security beans by hand so benchmarks don't pay for a Spring context or a database
+final class JwtFixtures {
+
+    private JwtFixtures() {
+    }
+
+    static JwtService jwtService() {
+        return jwtService(new VerifiedTokenCache(10_000, new SimpleMeterRegistry()));
+    }
+
+    static JwtService jwtService(VerifiedTokenCache verifiedTokenCache) {
+        // a configured key, so the ring never touches its repository
+        KeyPair keyPair = ecKeyPair();
+        SigningKeyRing signingKeyRing = new SigningKeyRing(null);
+        ReflectionTestUtils.setField(signingKeyRing, "configuredPrivateKey",
+                Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded()));
+        ReflectionTestUtils.setField(signingKeyRing, "configuredPublicKey",
+                Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()));
+        signingKeyRing.init();
+        JwtService jwtService = new JwtService(verifiedTokenCache, signingKeyRing);
+        ReflectionTestUtils.setField(jwtService, "jwtExpirationMs", 3_600_000L);
+        return jwtService;
+    }
+
+    private static KeyPair ecKeyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // runs the callback without a transaction, for services wired to stub repositories
+    static TransactionTemplate transactionTemplate() {
+        return new TransactionTemplate(new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        });
+    }
+
+    // nothing persisted, nothing loaded at startup
+    static TokenRevocationList tokenRevocationList(long expectedTokens) {
+        TokenRevocationRepository repository = (TokenRevocationRepository) Proxy.newProxyInstance(
+                TokenRevocationRepository.class.getClassLoader(), new Class<?>[]{TokenRevocationRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findActiveSince" -> List.of();
+                    case "save", "saveAll" -> args[0];
+                    case "deleteExpired" -> 0;
+                    case "toString" -> "TokenRevocationRepository stub";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        TokenRevocationList list = new TokenRevocationList(repository, transactionTemplate(),
+                new UserDetailsCache(1_000, 60_000, new SimpleMeterRegistry()), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(list, "expectedTokens", expectedTokens);
+        ReflectionTestUtils.setField(list, "jwtExpirationMs", 3_600_000L);
+        list.load();
+        return list;
+    }
+
+    static User user() {
+        return User.builder()
+                .id(42L)
+                .email("bench@example.com")
+                .firstName("Bench")
+                .lastName("Mark")
+                .password("$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z7ZCs6KWmkQ3cgFvT4Q0Z7W.")
+                .statusVersion(0L)
+                .build();
+    }
+}
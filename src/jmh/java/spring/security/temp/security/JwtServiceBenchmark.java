@@ -0,0 +1,52 @@
+package spring.security.temp.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import spring.security.temp.models.User;
+
+import java.util.concurrent.TimeUnit;
+
+// the *Cached cases hit the verified-token cache (the same token every time), verifyUncached clears it first so
+// every call pays the ES256 signature check and the parse, the gap is what the cache saves per request
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtServiceBenchmark {
+    private VerifiedTokenCache verifiedTokenCache;
+    private JwtService jwtService;
+    private User user;
+    private String token;
+
+    @Setup
+    public void setup() {
+        verifiedTokenCache = new VerifiedTokenCache(10_000, new SimpleMeterRegistry());
+        jwtService = JwtFixtures.jwtService(verifiedTokenCache);
+        user = JwtFixtures.user();
+        token = jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public boolean isTokenValidCached() {
+        return jwtService.isTokenValid(token, user);
+    }
+
+    @Benchmark
+    public VerifiedClaims verifyCached() {
+        return jwtService.verify(token);
+    }
+
+    // a miss, then the put every miss makes
+    @Benchmark
+    public VerifiedClaims verifyUncached() {
+        verifiedTokenCache.clear();
+        return jwtService.verify(token);
+    }
+}
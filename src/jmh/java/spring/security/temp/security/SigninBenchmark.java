@@ -0,0 +1,138 @@
+package spring.security.temp.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.core.userdetails.cache.NullUserCache;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import spring.security.temp.models.AuthenticationRequest;
+import spring.security.temp.models.User;
+import spring.security.temp.repository.RefreshTokenRepository;
+import spring.security.temp.repository.UserRepository;
+import spring.security.temp.services.AuthenticationService;
+import spring.security.temp.services.RefreshTokenService;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// AuthenticationService.signin end to end with the user lookup stubbed in memory and counted, token stores are
+// no-ops; sample time so the p99 of a known email, a wrong password and an unknown email can be compared (all
+// three should pay one BCrypt check) and the teardown prints how many lookups each signin made
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class SigninBenchmark {
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({"4", "10"})
+    public int strength;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong signins = new AtomicLong();
+
+    private AuthenticationService authenticationService;
+    private AuthenticationRequest knownUser;
+    private AuthenticationRequest wrongPassword;
+    private AuthenticationRequest unknownUser;
+
+    @Setup
+    public void setup() {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        User user = JwtFixtures.user();
+        user.setPassword(encoder.encode(PASSWORD));
+        UserRepository userRepository = userRepository(user);
+
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider(username -> userRepository.findByEmail(username)
+                .orElseThrow(() -> new UsernameNotFoundException("Username not found")));
+        provider.setPasswordEncoder(encoder);
+        AuthenticationManager authenticationManager = new ProviderManager(provider);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AuthRateLimits authRateLimits = new AuthRateLimits(60_000, 1_000, Integer.MAX_VALUE, Integer.MAX_VALUE,
+                Integer.MAX_VALUE, Integer.MAX_VALUE, meterRegistry);
+        UserCache userCache = new NullUserCache();
+        AccountLockoutService accountLockoutService = new AccountLockoutService(userRepository, userCache, null,
+                event -> { }, JwtFixtures.transactionTemplate(), meterRegistry);
+        ReflectionTestUtils.setField(accountLockoutService, "threshold", Integer.MAX_VALUE);
+
+        JwtService jwtService = JwtFixtures.jwtService();
+        RefreshTokenService refreshTokenService = new RefreshTokenService(refreshTokenRepository(), userRepository, null, jwtService,
+                JwtFixtures.transactionTemplate());
+        ReflectionTestUtils.setField(refreshTokenService, "refreshTokenDurationMs", 86_400_000L);
+
+        authenticationService = new AuthenticationService(userRepository, null, jwtService, encoder,
+                authenticationManager, null, null, null, event -> { }, authRateLimits, accountLockoutService,
+                refreshTokenService, null, null, meterRegistry);
+
+        knownUser = new AuthenticationRequest(user.getEmail(), PASSWORD);
+        wrongPassword = new AuthenticationRequest(user.getEmail(), "wrong password");
+        unknownUser = new AuthenticationRequest("nobody@example.com", PASSWORD);
+    }
+
+    @TearDown
+    public void report() {
+        System.out.printf("%nuser lookups per signin: %.2f%n", (double) lookups.get() / Math.max(1, signins.get()));
+    }
+
+    @Benchmark
+    public Object knownUser() {
+        signins.incrementAndGet();
+        return authenticationService.signin(knownUser);
+    }
+
+    @Benchmark
+    public Object wrongPassword() {
+        return failedSignin(wrongPassword);
+    }
+
+    @Benchmark
+    public Object unknownUser() {
+        return failedSignin(unknownUser);
+    }
+
+    private Object failedSignin(AuthenticationRequest request) {
+        signins.incrementAndGet();
+        try {
+            return authenticationService.signin(request);
+        } catch (BadCredentialsException e) {
+            return e;
+        }
+    }
+
+    // counts findByEmail calls, the failure counter updates are no-ops
+    private UserRepository userRepository(User user) {
+        return (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findByEmail" -> {
+                        lookups.incrementAndGet();
+                        yield user.getEmail().equals(args[0]) ? Optional.of(user) : Optional.empty();
+                    }
+                    case "incrementFailedSignins" -> List.of();
+                    case "resetFailedSignins" -> 0;
+                    case "toString" -> "UserRepository stub";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    // saving the signin's refresh token is a no-op
+    private static RefreshTokenRepository refreshTokenRepository() {
+        return (RefreshTokenRepository) Proxy.newProxyInstance(RefreshTokenRepository.class.getClassLoader(),
+                new Class<?>[]{RefreshTokenRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "save" -> args[0];
+                    case "toString" -> "RefreshTokenRepository stub";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
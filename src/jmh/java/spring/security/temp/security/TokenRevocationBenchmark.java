@@ -0,0 +1,51 @@
+package spring.security.temp.security;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// per-request revocation check with a full revocation list: a live token should be answered by the Bloom filter
+// alone, a revoked one also pays the exact map lookup
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenRevocationBenchmark {
+    @Param({"0", "100000"})
+    public int revoked;
+
+    private TokenRevocationList revocationList;
+    private VerifiedClaims live;
+    private VerifiedClaims revokedToken;
+
+    @Setup
+    public void setup() {
+        revocationList = JwtFixtures.tokenRevocationList(100_000);
+        Instant expiration = Instant.now().plusSeconds(3600);
+        for (int i = 0; i < revoked; i++) {
+            revocationList.revokeToken(claims(UUID.randomUUID().toString(), expiration));
+        }
+        live = claims(UUID.randomUUID().toString(), expiration);
+        revokedToken = claims(UUID.randomUUID().toString(), expiration);
+        revocationList.revokeToken(revokedToken);
+    }
+
+    @Benchmark
+    public boolean liveToken() {
+        return revocationList.isRevoked(live);
+    }
+
+    @Benchmark
+    public boolean revokedToken() {
+        return revocationList.isRevoked(revokedToken);
+    }
+
+    private static VerifiedClaims claims(String tokenId, Instant expiration) {
+        return new VerifiedClaims("bench@example.com", expiration, List.of(), 42L, 0L, tokenId, Instant.now());
+    }
+}
@@ -1,48 +1,129 @@
 package spring.security.temp.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
-import spring.security.temp.exceptions.ResourceNotFoundException;
 import spring.security.temp.models.Role;
 import spring.security.temp.models.User;
 import spring.security.temp.repository.RoleRepository;
 import spring.security.temp.repository.UserRepository;
+import spring.security.temp.security.BCryptCostCalibrator;
+import spring.security.temp.security.CostAwareBCryptPasswordEncoder;
+import spring.security.temp.security.OffloadingPasswordEncoder;
+import spring.security.temp.security.UserDetailsCache;
+
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 @RequiredArgsConstructor
 public class AppConfig {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AppConfig.class);
+
     private final UserRepository userRepository;
+    private final UserDetailsCache userDetailsCache;
+
+    // BCrypt runs on its own small pool, sized to the CPU, with a bounded queue so overload is rejected early;
+    // queue depth and active threads are exported as executor.* metrics tagged name=password-hash
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService passwordHashingExecutor(@Value("${app.passwordHashThreads}") int threads,
+                                                   @Value("${app.passwordHashQueueCapacity}") int queueCapacity,
+                                                   MeterRegistry meterRegistry) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("password-hash-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        new ExecutorServiceMetrics(executor, "password-hash", List.of()).bindTo(meterRegistry);
+        return executor;
+    }
+
+    // bulk imports hash on their own fork-join pool, kept smaller than the CPU count so logins still get cores
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool importHashingPool(@Value("${app.importHashThreads}") int threads) {
+        return new ForkJoinPool(threads);
+    }
 
-    // for hashing the password
+    // for hashing the password, new hashes are stored as {bcrypt}$2a$<cost>$... so algorithm and cost are recorded
+    // and older hashes are rehashed on the next successful signin
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(ExecutorService passwordHashingExecutor,
+                                           @Value("${app.passwordHashRetryAfterSeconds}") long retryAfterSeconds,
+                                           @Value("${app.bcryptStrength}") int strength,
+                                           @Value("${app.bcryptCalibrate}") boolean calibrate,
+                                           @Value("${app.bcryptTargetMs}") long targetMs,
+                                           MeterRegistry meterRegistry) {
+        int cost = calibrate ? BCryptCostCalibrator.calibrate(targetMs, strength) : strength;
+        PasswordEncoder bcrypt = new CostAwareBCryptPasswordEncoder(cost);
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        // hashes saved before the {id} prefix was introduced are plain bcrypt
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+        return new OffloadingPasswordEncoder(delegating, passwordHashingExecutor, retryAfterSeconds, meterRegistry);
     }
 
     // this connects the user model with Spring Security's login system.
+    // unknown emails must raise UsernameNotFoundException: DaoAuthenticationProvider then still runs a dummy
+    // password check, so they cost the same as a wrong password and get the same response
+    // lookups are timed by where the user came from, a rising database share means the cache is too small
     @Bean
-    public UserDetailsService userDetailsService(){
-        return username -> (UserDetails) userRepository.findByEmail(username)
-                .orElseThrow(()-> new ResourceNotFoundException("Username not found"));
+    public UserDetailsService userDetailsService(MeterRegistry meterRegistry){
+        Timer cacheLookups = userLookupTimer("cache", meterRegistry);
+        Timer databaseLookups = userLookupTimer("database", meterRegistry);
+        return username -> {
+            long start = System.nanoTime();
+            UserDetails cached = userDetailsCache.getUserFromCache(username);
+            if (cached != null) {
+                cacheLookups.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return cached;
+            }
+            try {
+                return userDetailsCache.get(username, email -> userRepository.findByEmail(email)
+                        .orElseThrow(()-> new UsernameNotFoundException("Username not found")));
+            } finally {
+                databaseLookups.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+
+    private static Timer userLookupTimer(String source, MeterRegistry meterRegistry) {
+        return Timer.builder("auth.user.lookup")
+                .description("Time taken to load a user for authentication")
+                .tag("source", source)
+                .register(meterRegistry);
     }
 
     // used to validate username and password during login.
     @Bean
-    public AuthenticationProvider authenticationProvider(UserDetailsService userDetailsService) {
+    public AuthenticationProvider authenticationProvider(UserDetailsService userDetailsService,
+                                                         PasswordEncoder passwordEncoder,
+                                                         UserDetailsPasswordService userDetailsPasswordService) {
         DaoAuthenticationProvider auth = new DaoAuthenticationProvider(userDetailsService);
-        auth.setPasswordEncoder(passwordEncoder());
+        auth.setPasswordEncoder(passwordEncoder);
+        auth.setUserDetailsPasswordService(userDetailsPasswordService);
         return auth;
     }
 
@@ -66,7 +147,7 @@ public class AppConfig {
                 admin.setPassword(passwordEncoder.encode(password));
                 admin.setRoles(Set.of(adminRole));
                 userRepository.save(admin);
-                System.out.println("Admin: " + admin.getEmail() + " created successfully");
+                LOGGER.info("admin {} created", admin.getEmail());
             }
         };
     }
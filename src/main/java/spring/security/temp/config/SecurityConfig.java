@@ -1,5 +1,6 @@
 package spring.security.temp.config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationProvider;
@@ -11,6 +12,7 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import spring.security.temp.security.JWTSecurityFilter;
+import spring.security.temp.security.RateLimitFilter;
 
 
 @Configuration
@@ -19,9 +21,11 @@ import spring.security.temp.security.JWTSecurityFilter;
 public class SecurityConfig {
     private final JWTSecurityFilter jwtSecurityFilter;
     private final AuthenticationProvider authenticationProvider;
+    private final RateLimitFilter rateLimitFilter;
 
-    public SecurityConfig(JWTSecurityFilter jwtSecurityFilter, AuthenticationProvider authenticationProvider) {
+    public SecurityConfig(JWTSecurityFilter jwtSecurityFilter, AuthenticationProvider authenticationProvider, RateLimitFilter rateLimitFilter) {
         this.jwtSecurityFilter = jwtSecurityFilter;
+        this.rateLimitFilter = rateLimitFilter;
         this.authenticationProvider = authenticationProvider;
     }
 
@@ -30,6 +34,8 @@ public class SecurityConfig {
         http
                 .csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth -> auth
+                        // the request was authorized before it went async (streamed exports), the completing dispatch has no token to check
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(
                                 "/swagger-ui/**",
                                 "/swagger-ui.html",
@@ -38,9 +44,12 @@ public class SecurityConfig {
                                 "/v3/api-docs/swagger-config",
                                 "/error",
                                 "/api/v1/auth/**",
-                                "/oauth2/**"
+                                "/oauth2/**",
+                                // scraped without a token, only reachable on the internal management port (management.server.port)
+                                "/actuator/health",
+                                "/actuator/prometheus"
                         ).permitAll()
-                        .requestMatchers("/api/vi/admin/**").hasRole("ADMIN")
+                        .requestMatchers("/api/v1/admin/**").hasRole("ADMIN")
                         .requestMatchers("/api/v1/users/**").hasAnyRole("USER", "ADMIN")
                         .anyRequest().authenticated()
                 )
@@ -48,6 +57,7 @@ public class SecurityConfig {
                         .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 )
                 .authenticationProvider(authenticationProvider)
+                .addFilterBefore(rateLimitFilter, UsernamePasswordAuthenticationFilter.class)
                 .addFilterBefore(jwtSecurityFilter, UsernamePasswordAuthenticationFilter.class);
 
 
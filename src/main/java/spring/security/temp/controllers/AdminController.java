@@ -2,25 +2,47 @@ package spring.security.temp.controllers;
 
 import io.swagger.v3.oas.annotations.Operation;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import spring.security.temp.models.BulkStatusRequest;
+import spring.security.temp.models.BulkStatusResponse;
+import spring.security.temp.models.CountMode;
+import spring.security.temp.models.CursorPage;
+import spring.security.temp.models.DataFormat;
 import spring.security.temp.models.ResponseDto;
 import spring.security.temp.models.User;
 import spring.security.temp.models.UserResponseDto;
+import spring.security.temp.models.UserSummaryDto;
 import spring.security.temp.services.AdminService;
+import spring.security.temp.services.UserExportService;
+import spring.security.temp.userimport.ImportRowReader;
+import spring.security.temp.userimport.UserImportService;
 
+import java.io.IOException;
+import java.io.InputStream;
+
+// checked here as well as by the /api/v1/admin/** matcher, so a path change can't silently open these endpoints
 @RestController
 @RequestMapping("/api/v1/admin")
+@PreAuthorize("hasRole('ADMIN')")
 public class AdminController {
     private final AdminService adminService;
+    private final UserExportService userExportService;
+    private final UserImportService userImportService;
 
-    public AdminController(AdminService adminService) {
+    public AdminController(AdminService adminService, UserExportService userExportService, UserImportService userImportService) {
         this.adminService = adminService;
+        this.userExportService = userExportService;
+        this.userImportService = userImportService;
     }
 
     @GetMapping()
-    @Operation(summary = "Returns all users in the DB")
+    @Operation(summary = "Returns all users in the DB", deprecated = true)
     public ResponseEntity<Page<User>> getAllUsers(@RequestParam(value = "pageNo", defaultValue = "0", required = false) int pageNo,
                                                   @RequestParam(value = "pageSize", defaultValue = "10", required = false) int pageSize,
                                                   @RequestParam(defaultValue = "email", required = false) String sortBy,
@@ -28,6 +50,42 @@ public class AdminController {
         return new ResponseEntity<>(adminService.getAllUsers(pageNo, pageSize, sortBy, ascending), HttpStatus.OK);
     }
 
+    // pass the previous response's next as after to get the following page
+    @GetMapping("/users")
+    @Operation(summary = "Lists users page by page with a cursor")
+    public ResponseEntity<CursorPage<UserSummaryDto>> listUsers(@RequestParam(required = false) Long after,
+                                                                @RequestParam(defaultValue = "20") int pageSize,
+                                                                @RequestParam(defaultValue = "true") boolean ascending,
+                                                                @RequestParam(defaultValue = "NONE") CountMode count) {
+        return new ResponseEntity<>(adminService.listUsers(after, pageSize, ascending, count), HttpStatus.OK);
+    }
+
+    // written on an async thread while the rows are read, memory stays flat however many users there are
+    @GetMapping("/users/export")
+    @Operation(summary = "Streams all users as NDJSON or CSV")
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(defaultValue = "NDJSON") DataFormat format,
+                                                             @RequestParam(required = false) Boolean locked,
+                                                             @RequestParam(required = false) Boolean enabled,
+                                                             @RequestParam(required = false) Boolean deleted) {
+        return ResponseEntity.ok()
+                .contentType(format.mediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users." + format.extension() + "\"")
+                .body(out -> userExportService.export(format, locked, enabled, deleted, out));
+    }
+
+    // the upload is the raw request body (text/csv with a header row, or application/x-ndjson), the response is
+    // a per-row CSV report written as the import goes
+    @PostMapping(value = "/users/import", consumes = {"text/csv", "application/x-ndjson"})
+    @Operation(summary = "Creates users in bulk from a CSV or NDJSON upload")
+    public ResponseEntity<StreamingResponseBody> importUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                             InputStream body) throws IOException {
+        ImportRowReader reader = userImportService.open(DataFormat.of(contentType), body);
+        return ResponseEntity.ok()
+                .contentType(DataFormat.CSV.mediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"import-report.csv\"")
+                .body(out -> userImportService.importUsers(reader, out));
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Returns a user based on id")
     public ResponseEntity<ResponseDto<UserResponseDto>> getUser(@PathVariable Long id) {
@@ -44,6 +102,12 @@ public class AdminController {
         return new ResponseEntity<>(adminService.partialUpdateUser(id, locked, enabled), HttpStatus.OK);
     }
 
+    // lock/unlock/enable/disable many users at once, by id list or by filter
+    @Operation(summary = "Update the status of many users - Admin")
+    @PatchMapping("/users/status")
+    public ResponseEntity<BulkStatusResponse> bulkUpdateUserStatus(@RequestBody BulkStatusRequest request) {
+        return new ResponseEntity<>(adminService.bulkUpdateStatus(request), HttpStatus.OK);
+    }
 
 //    // partially update user details - 1. locked 2.enable 3.update specific field(role)
 //    @Operation(summary = "Update User's Details - Admin")
@@ -1,18 +1,18 @@
 package spring.security.temp.controllers;
 
-import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import spring.security.temp.models.*;
-import spring.security.temp.repository.RefreshTokenRepository;
-import spring.security.temp.security.JwtService;
+import spring.security.temp.security.SigningKeyRing;
 import spring.security.temp.services.AuthenticationService;
 import spring.security.temp.services.RefreshTokenService;
 
+import java.time.Duration;
 import java.util.Map;
 
 // this is where we handle login, signup and getting JWT tokens
@@ -22,8 +22,7 @@ import java.util.Map;
 public class AuthenticationController {
     private final AuthenticationService authenticationService;
     private final RefreshTokenService refreshTokenService;
-    private final RefreshTokenRepository refreshTokenRepository;
-    private final JwtService jwtService;
+    private final SigningKeyRing signingKeyRing;
 
     @PostMapping("/signup")
     public ResponseEntity<RegistrationResponse> signup(@Valid @RequestBody RegistrationRequest registrationRequest) {
@@ -45,40 +44,25 @@ public class AuthenticationController {
         return new ResponseEntity<>(authenticationService.resendVerification(emailRequest), HttpStatus.OK);
     }
 
-//    @PostMapping("/refresh-token")
-//    public ResponseEntity<?> refreshToken(@RequestBody Map<String, String> payload){
-//        String requestToken = payload.get("refreshToken");
-//        return refreshTokenRepository.findByToken(requestToken)
-//                .map(token -> {
-//                    if (refreshTokenService.isTokenExpired(token)) {
-//                        refreshTokenRepository.delete(token);
-//                        return ResponseEntity.badRequest().body("Refresh token expired. Please login again.");
-//                    }
-//                    String newJwt = jwtService.generateToken(token.getUser());
-//                    return ResponseEntity.ok(Map.of("token", newJwt));
-//                })
-//                .orElse(ResponseEntity.badRequest().body("Invalid refresh token."));
-//    }
-//
-//    @PostMapping("/logout")
-//    public ResponseEntity<?> logoutUser(@RequestBody Map<String, String> payload) {
-//        String requestToken = payload.get("refreshToken");
-//
-//        if (requestToken == null || requestToken.isBlank()) {
-//            return ResponseEntity.badRequest().body("Refresh token is required.");
-//        }
-//
-//        return refreshTokenRepository.findByToken(requestToken)
-//                .map(token -> {
-//                    refreshTokenRepository.delete(token);
-//                    return ResponseEntity.ok("Logged out successfully.");
-//                })
-//                .orElse(ResponseEntity.badRequest().body("Invalid refresh token."));
-//    }
+    // exchanges a refresh token for a new access token and a new refresh token, the presented one stops working
+    @PostMapping("/refresh-token")
+    public ResponseEntity<RefreshTokenResponse> refreshToken(@RequestBody RefreshTokenRequest refreshTokenRequest){
+        return new ResponseEntity<>(refreshTokenService.refreshToken(refreshTokenRequest.refreshToken()), HttpStatus.OK);
+    }
+
+    // the refresh token in the body is optional, without it only the access token is revoked
+    @PostMapping("/logout")
+    public ResponseEntity<GeneralResponse> logout(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+                                                  @RequestBody(required = false) RefreshTokenRequest refreshTokenRequest){
+        return new ResponseEntity<>(authenticationService.logout(authorization, refreshTokenRequest), HttpStatus.OK);
+    }
 
-    @GetMapping("/refresh-token")
-    public void refreshToken(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse){
-        final String authHeader = httpServletRequest.getHeader("Authorization");
+    // public keys for verifying access tokens locally, matched by the kid in the token header
+    @GetMapping("/jwks")
+    public ResponseEntity<Map<String, Object>> jwks(){
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofSeconds(signingKeyRing.jwksMaxAgeSeconds())).cachePublic())
+                .body(signingKeyRing.jwks());
     }
 
     @PostMapping("/forgot-password")
@@ -0,0 +1,186 @@
+package spring.security.temp.email;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// drains the outbox in batches, one SMTP connection per batch, failed messages are retried with exponential backoff.
+// Emails are claimed with a lease, sent outside any transaction and the outcome recorded in a second transaction
+@Component
+public class EmailOutboxWorker {
+    private final static Logger LOGGER = LoggerFactory.getLogger(EmailOutboxWorker.class);
+    private static final String FROM = "aboagyeadwoapokua@gmail.com";
+    // SENDING rows are only due again once their lease ran out
+    private static final List<EmailStatus> CLAIMABLE = List.of(EmailStatus.PENDING, EmailStatus.SENDING);
+
+    private final OutboxEmailRepository outboxEmailRepository;
+    private final JavaMailSender javaMailSender;
+    private final TransactionTemplate transactionTemplate;
+    private final Timer sendTimer;
+    private final Counter sent;
+    private final Counter failed;
+
+    @Value("${app.emailOutboxBatchSize}")
+    private int batchSize;
+
+    @Value("${app.emailOutboxMaxAttempts}")
+    private int maxAttempts;
+
+    @Value("${app.emailOutboxBackoffMs}")
+    private long backoffMs;
+
+    @Value("${app.emailOutboxLeaseMs}")
+    private long leaseMs;
+
+    public EmailOutboxWorker(OutboxEmailRepository outboxEmailRepository, JavaMailSender javaMailSender, TransactionTemplate transactionTemplate,
+                             MeterRegistry meterRegistry) {
+        this.outboxEmailRepository = outboxEmailRepository;
+        this.javaMailSender = javaMailSender;
+        this.transactionTemplate = transactionTemplate;
+        this.sendTimer = Timer.builder("email.send")
+                .description("Time taken to hand one batch of emails to the SMTP server")
+                .register(meterRegistry);
+        this.sent = emailCounter("sent", meterRegistry);
+        this.failed = emailCounter("failed", meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.emailOutboxPollMs}")
+    public void drain() {
+        List<OutboxEmail> batch;
+        do {
+            // millisecond precision so the lease compares equal once it went through the timestamp(6) column
+            LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+            LocalDateTime leaseUntil = now.plusNanos(leaseMs * 1_000_000);
+            batch = transactionTemplate.execute(status -> claim(now, leaseUntil));
+            if (batch == null || batch.isEmpty()) {
+                return;
+            }
+            Map<OutboxEmail, Exception> failures = send(batch);
+            List<OutboxEmail> claimed = batch;
+            transactionTemplate.executeWithoutResult(status -> record(claimed, failures, leaseUntil));
+        } while (batch.size() == batchSize);
+    }
+
+    // short transaction: the rows are locked only while they are marked SENDING, so the SMTP round-trip holds neither
+    // row locks nor a pooled connection. If the worker dies before recording the batch, the emails are claimed again
+    // once the lease runs out, so an email may go out twice but is never lost
+    private List<OutboxEmail> claim(LocalDateTime now, LocalDateTime leaseUntil) {
+        List<OutboxEmail> batch = outboxEmailRepository
+                .findByStatusInAndNextAttemptAtLessThanEqualOrderByIdAsc(CLAIMABLE, now, Limit.of(batchSize));
+        for (OutboxEmail email : batch) {
+            email.setStatus(EmailStatus.SENDING);
+            email.setAttempts(email.getAttempts() + 1);
+            email.setNextAttemptAt(leaseUntil);
+        }
+        return batch;
+    }
+
+    // runs outside any transaction, returns the emails that were not accepted by the SMTP server
+    private Map<OutboxEmail, Exception> send(List<OutboxEmail> batch) {
+        Map<OutboxEmail, Exception> failures = new IdentityHashMap<>();
+        Map<MimeMessage, OutboxEmail> messages = new IdentityHashMap<>();
+        for (OutboxEmail email : batch) {
+            try {
+                messages.put(toMimeMessage(email), email);
+            } catch (MessagingException e) {
+                failures.put(email, e);
+            }
+        }
+        if (messages.isEmpty()) {
+            return failures;
+        }
+
+        long start = System.nanoTime();
+        try {
+            javaMailSender.send(messages.keySet().toArray(MimeMessage[]::new));
+        } catch (MailSendException e) {
+            for (Map.Entry<Object, Exception> failure : e.getFailedMessages().entrySet()) {
+                OutboxEmail email = messages.get(failure.getKey());
+                if (email != null) {
+                    failures.put(email, failure.getValue());
+                }
+            }
+        } catch (MailException e) {
+            LOGGER.error("failed to send email batch", e);
+            for (OutboxEmail email : messages.values()) {
+                failures.put(email, e);
+            }
+        } finally {
+            sendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return failures;
+    }
+
+    // attempts were already counted when the batch was claimed
+    private void record(List<OutboxEmail> batch, Map<OutboxEmail, Exception> failures, LocalDateTime leaseUntil) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> sentIds = new ArrayList<>();
+        for (OutboxEmail email : batch) {
+            Exception failure = failures.get(email);
+            if (failure == null) {
+                sentIds.add(email.getId());
+                continue;
+            }
+            failed.increment();
+            String lastError = truncate(String.valueOf(failure.getMessage()));
+            int attempts = email.getAttempts();
+            if (attempts >= maxAttempts) {
+                LOGGER.error("giving up on email {} after {} attempts", email.getId(), attempts);
+                outboxEmailRepository.markFailed(email.getId(), leaseUntil, EmailStatus.FAILED, now, lastError);
+            } else {
+                LocalDateTime nextAttemptAt = now.plusNanos(backoffMs * (1L << (attempts - 1)) * 1_000_000);
+                outboxEmailRepository.markFailed(email.getId(), leaseUntil, EmailStatus.PENDING, nextAttemptAt, lastError);
+            }
+        }
+        if (!sentIds.isEmpty()) {
+            int updated = outboxEmailRepository.markSent(sentIds, leaseUntil, now);
+            sent.increment(sentIds.size());
+            if (updated < sentIds.size()) {
+                LOGGER.warn("{} emails were sent after their lease ran out and may be sent again", sentIds.size() - updated);
+            }
+        }
+    }
+
+    private MimeMessage toMimeMessage(OutboxEmail email) throws MessagingException {
+        MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, "utf-8");
+        helper.setText(email.getBody(), true);
+        helper.setTo(email.getRecipient());
+        helper.setSubject(email.getSubject());
+        helper.setFrom(FROM);
+        return mimeMessage;
+    }
+
+    private static String truncate(String message) {
+        return message.length() <= 1000 ? message : message.substring(0, 1000);
+    }
+
+    // failed counts every unsuccessful attempt, retries included
+    private static Counter emailCounter(String outcome, MeterRegistry meterRegistry) {
+        return Counter.builder("email.sent")
+                .description("Outbox emails by send outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -1,5 +1,7 @@
 package spring.security.temp.email;
 
+import java.util.Map;
+
 public interface EmailSender {
-    void send(String to, String email);
+    void send(String to, EmailTemplate template, Map<String, String> values);
 }
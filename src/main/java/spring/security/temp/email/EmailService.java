@@ -1,35 +1,23 @@
 package spring.security.temp.email;
 
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
+import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.Map;
+
+// renders the email and queues it in the outbox, EmailOutboxWorker does the actual SMTP work
 @Service
 @AllArgsConstructor
 public class EmailService implements  EmailSender{
-    private final JavaMailSender javaMailSender;
-    private final static Logger LOGGER = LoggerFactory.getLogger(EmailService.class);
+    private final OutboxEmailRepository outboxEmailRepository;
+    private final EmailTemplates emailTemplates;
 
     @Override
-    @Async
-    public void send(String to, String email) {
-        try{
-            MimeMessage mimeMessage = javaMailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, "utf-8");
-            helper.setText(email, true);
-            helper.setTo(to);
-            helper.setSubject("Confirm your email");
-            helper.setFrom("aboagyeadwoapokua@gmail.com");
-            javaMailSender.send(mimeMessage);
-        } catch (MessagingException e){
-            LOGGER.error("failed to send email", e);
-            throw new IllegalStateException("failed to send email");
-        }
+    @Transactional
+    public void send(String to, EmailTemplate template, Map<String, String> values) {
+        String body = emailTemplates.render(template, values);
+        outboxEmailRepository.save(new OutboxEmail(to, template.getSubject(), body, LocalDateTime.now()));
     }
 }
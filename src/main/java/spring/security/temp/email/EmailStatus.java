@@ -0,0 +1,9 @@
+package spring.security.temp.email;
+
+public enum EmailStatus {
+    PENDING,
+    // claimed by a worker until next_attempt_at, see EmailOutboxWorker
+    SENDING,
+    SENT,
+    FAILED
+}
@@ -0,0 +1,17 @@
+package spring.security.temp.email;
+
+import lombok.Getter;
+
+@Getter
+public enum EmailTemplate {
+    VERIFICATION("templates/email/verification.html", "Confirm your email"),
+    ACCOUNT_LOCKED("templates/email/account-locked.html", "Your account has been locked");
+
+    private final String path;
+    private final String subject;
+
+    EmailTemplate(String path, String subject) {
+        this.path = path;
+        this.subject = subject;
+    }
+}
@@ -0,0 +1,35 @@
+package spring.security.temp.email;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+// every template is read and compiled once at startup, a missing or broken template fails the boot
+@Component
+public class EmailTemplates {
+    private final Map<EmailTemplate, CompiledTemplate> templates = new EnumMap<>(EmailTemplate.class);
+
+    public EmailTemplates() {
+        for (EmailTemplate template : EmailTemplate.values()) {
+            templates.put(template, CompiledTemplate.compile(load(template.getPath())));
+        }
+    }
+
+    public String render(EmailTemplate template, Map<String, String> values) {
+        return templates.get(template).render(values);
+    }
+
+    private static String load(String path) {
+        try (InputStream in = new ClassPathResource(path).getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load email template " + path, e);
+        }
+    }
+}
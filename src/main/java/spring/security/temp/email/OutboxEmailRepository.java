@@ -0,0 +1,43 @@
+package spring.security.temp.email;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEmailRepository extends JpaRepository<OutboxEmail, Long> {
+
+    // FOR UPDATE SKIP LOCKED, so several app instances can claim from the outbox without claiming the same email
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    List<OutboxEmail> findByStatusInAndNextAttemptAtLessThanEqualOrderByIdAsc(Collection<EmailStatus> statuses, LocalDateTime now, Limit limit);
+
+    // the lease is the claim token: once it ran out and another worker claimed the email, these update nothing
+    @Modifying
+    @Query("update OutboxEmail e set e.status = spring.security.temp.email.EmailStatus.SENT, e.sentAt = :sentAt " +
+            "where e.id in :ids and e.status = spring.security.temp.email.EmailStatus.SENDING and e.nextAttemptAt = :leaseUntil")
+    int markSent(Collection<Long> ids, LocalDateTime leaseUntil, LocalDateTime sentAt);
+
+    @Modifying
+    @Query("update OutboxEmail e set e.status = :status, e.nextAttemptAt = :nextAttemptAt, e.lastError = :lastError " +
+            "where e.id = :id and e.status = spring.security.temp.email.EmailStatus.SENDING and e.nextAttemptAt = :leaseUntil")
+    int markFailed(Long id, LocalDateTime leaseUntil, EmailStatus status, LocalDateTime nextAttemptAt, String lastError);
+
+    // keyset page of emails that were sent or gave up before the cutoff, a failed email's last attempt is its
+    // nextAttemptAt
+    @Query("select e.id from OutboxEmail e where e.id > :afterId " +
+            "and ((e.status = spring.security.temp.email.EmailStatus.SENT and e.sentAt < :cutoff) " +
+            "or (e.status = spring.security.temp.email.EmailStatus.FAILED and e.nextAttemptAt < :cutoff)) " +
+            "order by e.id")
+    List<Long> findPurgeableIds(Long afterId, LocalDateTime cutoff, Limit limit);
+}
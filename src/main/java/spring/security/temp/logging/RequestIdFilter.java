@@ -0,0 +1,74 @@
+package spring.security.temp.logging;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.jspecify.annotations.NonNull;
+import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+// tags every log line of a request with its id (taken from X-Request-Id or generated, and echoed back) and, when
+// the caller sent a W3C traceparent header, its trace id; runs first so the security filters' logs carry them too
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestIdFilter extends OncePerRequestFilter {
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+    static final String REQUEST_ID_KEY = "requestId";
+    static final String TRACE_ID_KEY = "traceId";
+
+    // anything else is replaced, so a client can't forge log lines or blow up the MDC
+    private static final Pattern VALID_REQUEST_ID = Pattern.compile("[A-Za-z0-9._:-]{1,64}");
+    // version-traceid-parentid-flags, an all-zero trace id is invalid
+    private static final Pattern TRACEPARENT = Pattern.compile("[0-9a-f]{2}-([0-9a-f]{32})-[0-9a-f]{16}-[0-9a-f]{2}");
+    private static final String INVALID_TRACE_ID = "0".repeat(32);
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain)
+            throws ServletException, IOException {
+        String requestId = request.getHeader(REQUEST_ID_HEADER);
+        if (requestId == null || !VALID_REQUEST_ID.matcher(requestId).matches()) {
+            requestId = newRequestId();
+        }
+        String traceId = traceId(request.getHeader("traceparent"));
+
+        response.setHeader(REQUEST_ID_HEADER, requestId);
+        MDC.put(REQUEST_ID_KEY, requestId);
+        if (traceId != null) {
+            MDC.put(TRACE_ID_KEY, traceId);
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            MDC.remove(REQUEST_ID_KEY);
+            MDC.remove(TRACE_ID_KEY);
+        }
+    }
+
+    // only has to be unique, not unguessable, so no SecureRandom on the request path
+    private static String newRequestId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+
+    private static String traceId(String traceparent) {
+        if (traceparent == null) {
+            return null;
+        }
+        var matcher = TRACEPARENT.matcher(traceparent.trim());
+        if (!matcher.matches() || matcher.group(1).equals(INVALID_TRACE_ID)) {
+            return null;
+        }
+        return matcher.group(1);
+    }
+}
@@ -0,0 +1,51 @@
+package spring.security.temp.logging;
+
+import org.springframework.boot.json.JsonWriter;
+import org.springframework.boot.logging.structured.StructuredLoggingJsonMembersCustomizer;
+
+import java.util.regex.Pattern;
+
+// masks credentials in every string of a structured log event (message, MDC values, stack traces): JWTs, bearer
+// tokens and token=/password= pairs such as the confirmation link's query string. Runs on the async appender's
+// worker thread, not on the request thread; registered through logging.structured.json.customizer
+public class TokenRedactingJsonMembersCustomizer implements StructuredLoggingJsonMembersCustomizer<Object> {
+    static final String REDACTED = "[REDACTED]";
+
+    private static final Pattern JWT = Pattern.compile("eyJ[A-Za-z0-9_-]*\\.[A-Za-z0-9_-]+\\.[A-Za-z0-9_-]*");
+    private static final Pattern BEARER = Pattern.compile("(?i)(bearer\\s+)[A-Za-z0-9._~+/=-]+");
+    private static final Pattern SECRET_PAIR = Pattern.compile(
+            "(?i)((?:token|password|secret)\"?\\s*[=:]\\s*\"?)[^\\s&\"',;}]+");
+
+    @Override
+    public void customize(JsonWriter.Members<Object> members) {
+        members.applyingValueProcessor(JsonWriter.ValueProcessor.of(String.class, TokenRedactingJsonMembersCustomizer::redact));
+    }
+
+    static String redact(String value) {
+        if (value == null || !mayContainSecret(value)) {
+            return value;
+        }
+        String redacted = JWT.matcher(value).replaceAll(REDACTED);
+        redacted = BEARER.matcher(redacted).replaceAll("$1" + REDACTED);
+        return SECRET_PAIR.matcher(redacted).replaceAll("$1" + REDACTED);
+    }
+
+    // most log lines contain none of these, so they skip the regular expressions; one pass over the string,
+    // only the candidate first letters are compared further
+    private static boolean mayContainSecret(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            boolean candidate = switch (value.charAt(i)) {
+                case 'e' -> value.startsWith("eyJ", i);
+                case 'b', 'B' -> value.regionMatches(true, i, "bearer", 0, 6);
+                case 't', 'T' -> value.regionMatches(true, i, "token", 0, 5);
+                case 'p', 'P' -> value.regionMatches(true, i, "password", 0, 8);
+                case 's', 'S' -> value.regionMatches(true, i, "secret", 0, 6);
+                default -> false;
+            };
+            if (candidate) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
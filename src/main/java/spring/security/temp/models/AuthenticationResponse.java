@@ -3,5 +3,5 @@ package spring.security.temp.models;
 import lombok.Builder;
 
 @Builder
-public record AuthenticationResponse(String message, String token) {
+public record AuthenticationResponse(String message, String token, String refreshToken) {
 }
@@ -0,0 +1,10 @@
+package spring.security.temp.models;
+
+import java.util.List;
+
+// targets either the listed ids or every user matching the filter; locked/enabled left null are not changed
+public record BulkStatusRequest(List<Long> ids, Filter filter, Boolean locked, Boolean enabled) {
+
+    public record Filter(Boolean locked, Boolean enabled, Boolean deleted) {
+    }
+}
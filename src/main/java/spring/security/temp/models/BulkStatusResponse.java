@@ -0,0 +1,10 @@
+package spring.security.temp.models;
+
+import java.util.List;
+
+public record BulkStatusResponse(long matched, long updated, long notFound, List<Batch> batches) {
+
+    // matched users in the batch, updated is how many of them actually changed status, notFound the ids with no user
+    public record Batch(int batch, int matched, int updated, int notFound) {
+    }
+}
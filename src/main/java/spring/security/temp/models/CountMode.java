@@ -0,0 +1,8 @@
+package spring.security.temp.models;
+
+// how CursorPage.total is computed: skipped, count(*), or the planner's row estimate
+public enum CountMode {
+    NONE,
+    EXACT,
+    ESTIMATE
+}
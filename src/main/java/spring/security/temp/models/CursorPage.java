@@ -0,0 +1,8 @@
+package spring.security.temp.models;
+
+import java.util.List;
+
+// next is the cursor for the following page, null on the last page
+// total is only filled in when the caller asked for a count
+public record CursorPage<T>(List<T> items, Long next, Long total) {
+}
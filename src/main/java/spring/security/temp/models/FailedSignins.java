@@ -0,0 +1,7 @@
+package spring.security.temp.models;
+
+// a row returned by UserRepository.incrementFailedSignins, the email as stored so caches can be evicted by it
+public interface FailedSignins {
+    String getEmail();
+    Integer getFailedSigninAttempts();
+}
@@ -0,0 +1,34 @@
+package spring.security.temp.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+// one ES256 key of the shared signing key ring (see SigningKeyRing), the private key is stored as PKCS#8 and the
+// public key as X.509 DER; anyone who can read this table can mint access tokens
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+public class JwtSigningKey {
+    @Id
+    private String kid;
+
+    @Column(nullable = false)
+    private byte[] privateKey;
+
+    @Column(nullable = false)
+    private byte[] publicKey;
+
+    // when it starts signing, published in the JWKS before that
+    @Column(nullable = false)
+    private Instant activeFrom;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+}
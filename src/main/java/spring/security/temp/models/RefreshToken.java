@@ -7,6 +7,7 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.time.Instant;
+import java.util.UUID;
 
 @Getter
 @Setter
@@ -18,7 +19,7 @@ public class RefreshToken {
     @SequenceGenerator(
             name = "refresh_token_sequence",
             sequenceName = "refresh_token_sequence",
-            allocationSize = 1
+            allocationSize = 50
     )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
@@ -26,13 +27,23 @@ public class RefreshToken {
     )
     private Long id;
 
-    @OneToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", referencedColumnName = "id")
     private User user;
 
+    // SHA-256 of the token handed to the client, the token itself is never stored
     @Column(nullable = false, unique = true)
-    private String token;
+    private byte[] tokenHash;
+
+    // every token rotated from the same signin shares the family
+    @Column(nullable = false)
+    private UUID familyId;
 
     @Column(nullable = false)
     private Instant expiryDate;
-}
\ No newline at end of file
+
+    // set when the token is exchanged, a second exchange is a replay
+    private Instant usedAt;
+
+    private Instant revokedAt;
+}
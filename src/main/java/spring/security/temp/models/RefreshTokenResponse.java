@@ -3,5 +3,5 @@ package spring.security.temp.models;
 import lombok.Builder;
 
 @Builder
-public record RefreshTokenResponse(String message, RefreshToken token) {
+public record RefreshTokenResponse(String message, String token, String refreshToken) {
 }
@@ -15,7 +15,7 @@ public class Role {
     @SequenceGenerator(
             name = "role_sequence",
             sequenceName = "role_sequence",
-            allocationSize = 1
+            allocationSize = 50
     )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
@@ -0,0 +1,43 @@
+package spring.security.temp.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+// a revoked access token (tokenId is its jti) or, with userId set, every token of that user issued up to
+// revokedAt, or with userId and statusVersion set, every token of that user carrying an older status version;
+// kept until expiresAt, after which the tokens it covers have expired anyway
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+public class TokenRevocation {
+    @Id
+    @SequenceGenerator(
+            name = "token_revocation_sequence",
+            sequenceName = "token_revocation_sequence",
+            allocationSize = 50
+    )
+    @GeneratedValue(
+            strategy = GenerationType.SEQUENCE,
+            generator = "token_revocation_sequence"
+    )
+    private Long id;
+
+    private String tokenId;
+
+    private Long userId;
+
+    @Column(nullable = false)
+    private Instant revokedAt;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+
+    private Long statusVersion;
+}
@@ -0,0 +1,10 @@
+package spring.security.temp.models;
+
+import java.util.UUID;
+
+// a row returned by RefreshTokenRepository.markUsed, what the successor token needs and the owner's email
+public interface UsedRefreshToken {
+    Long getUserId();
+    UUID getFamilyId();
+    String getEmail();
+}
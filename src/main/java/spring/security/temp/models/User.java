@@ -5,7 +5,9 @@ import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import lombok.*;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import java.time.Instant;
 import java.util.*;
 
 @Table(name = "users")
@@ -16,11 +18,13 @@ import java.util.*;
 @Entity
 @Builder
 public class User implements UserDetails{
+    private static final GrantedAuthority USER_AUTHORITY = new SimpleGrantedAuthority("ROLE_USER");
+
     @Id
     @SequenceGenerator(
             name = "user_sequence",
             sequenceName = "user_sequence",
-            allocationSize = 1
+            allocationSize = 50
     )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
@@ -49,6 +53,17 @@ public class User implements UserDetails{
     @Builder.Default
     private Boolean enabled = true;
 
+    // consecutive failed signins, reset by a successful one
+    @Builder.Default
+    private Integer failedSigninAttempts = 0;
+
+    // set for a brute-force lockout, the account unlocks by itself once it has passed; null for admin locks
+    private Instant lockedUntil;
+
+    // bumped on lock/enable/delete/password changes, tokens carrying an older version are rejected
+    @Builder.Default
+    private Long statusVersion = 0L;
+
     @Builder.Default
     @ManyToMany(fetch = FetchType.EAGER)
     private Set<Role> roles = new HashSet<>();
@@ -59,14 +74,33 @@ public class User implements UserDetails{
         this.isDeleted = false;
     }
 
+    // an explicit lock or unlock replaces any timed lockout
+    public void setLocked(Boolean locked) {
+        this.locked = locked;
+        this.lockedUntil = null;
+    }
+
+    public void bumpStatusVersion() {
+        this.statusVersion = statusVersion == null ? 1L : statusVersion + 1;
+    }
+
     @Override
     public String getUsername() {
         return email;
     }
 
+    // every account is a user, stored roles (ROLE_ADMIN) come on top
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return List.of();
+        if (roles == null || roles.isEmpty()) {
+            return List.of(USER_AUTHORITY);
+        }
+        List<GrantedAuthority> authorities = new ArrayList<>(roles.size() + 1);
+        authorities.add(USER_AUTHORITY);
+        for (Role role : roles) {
+            authorities.add(new SimpleGrantedAuthority(role.getName()));
+        }
+        return authorities;
     }
 
     @Override
@@ -81,7 +115,7 @@ public class User implements UserDetails{
 
     @Override
     public boolean isAccountNonLocked() {
-        return locked == null || !locked;
+        return locked == null || !locked || (lockedUntil != null && lockedUntil.isBefore(Instant.now()));
     }
 
     @Override
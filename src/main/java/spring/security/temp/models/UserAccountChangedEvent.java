@@ -0,0 +1,13 @@
+package spring.security.temp.models;
+
+// published after a user's account is saved, email is the one the user was cached under
+public record UserAccountChangedEvent(Long userId, String email, Long statusVersion) {
+
+    public static UserAccountChangedEvent of(User user, String previousEmail) {
+        return new UserAccountChangedEvent(user.getId(), previousEmail, user.getStatusVersion());
+    }
+
+    public static UserAccountChangedEvent of(User user) {
+        return of(user, user.getEmail());
+    }
+}
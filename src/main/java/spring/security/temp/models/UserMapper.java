@@ -3,6 +3,10 @@ package spring.security.temp.models;
 import spring.security.temp.models.UserResponseDto;
 import spring.security.temp.models.User;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
 public class UserMapper {
     public static UserResponseDto toDTo(User user) {
         return new UserResponseDto(
@@ -12,4 +16,40 @@ public class UserMapper {
                 user.getEnabled()
         );
     }
+
+    // rows arrive grouped by user (ordered by id), one per role
+    public static List<UserSummaryDto> toSummaries(List<UserSummaryRow> rows) {
+        List<UserSummaryDto> summaries = new ArrayList<>();
+        forEachSummary(rows, summaries::add);
+        return summaries;
+    }
+
+    // folds the role rows of each user into one summary as they go by, so only one user is held at a time
+    public static void forEachSummary(Iterable<UserSummaryRow> rows, Consumer<UserSummaryDto> action) {
+        UserSummaryRow current = null;
+        List<String> roles = new ArrayList<>();
+        for (UserSummaryRow row : rows) {
+            if (current != null && !current.id().equals(row.id())) {
+                action.accept(toSummary(current, roles));
+                roles = new ArrayList<>();
+            }
+            current = row;
+            if (row.role() != null) {
+                roles.add(row.role());
+            }
+        }
+        if (current != null) {
+            action.accept(toSummary(current, roles));
+        }
+    }
+
+    private static UserSummaryDto toSummary(UserSummaryRow row, List<String> roles) {
+        return new UserSummaryDto(
+                row.id(),
+                row.email(),
+                row.firstName() + " " + row.lastName(),
+                UserSummaryDto.status(row),
+                List.copyOf(roles)
+        );
+    }
 }
@@ -0,0 +1,8 @@
+package spring.security.temp.models;
+
+// a row returned by UserRepository.updateStatus
+public interface UserStatusChange {
+    Long getId();
+    String getEmail();
+    Long getStatusVersion();
+}
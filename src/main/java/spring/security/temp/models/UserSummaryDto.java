@@ -0,0 +1,16 @@
+package spring.security.temp.models;
+
+import java.util.List;
+
+public record UserSummaryDto(Long id, String email, String fullName, String status, List<String> roles) {
+
+    static String status(UserSummaryRow row) {
+        if (Boolean.TRUE.equals(row.isDeleted())) {
+            return "DELETED";
+        }
+        if (Boolean.TRUE.equals(row.locked())) {
+            return "LOCKED";
+        }
+        return Boolean.FALSE.equals(row.enabled()) ? "DISABLED" : "ACTIVE";
+    }
+}
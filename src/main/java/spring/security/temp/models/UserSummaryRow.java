@@ -0,0 +1,7 @@
+package spring.security.temp.models;
+
+// one row per (user, role) from the UserRepository summary queries, role is null for users without roles.
+// a constructor expression rather than an interface projection, so each row is a plain object and not a proxy
+public record UserSummaryRow(Long id, String email, String firstName, String lastName,
+                             Boolean locked, Boolean enabled, Boolean isDeleted, String role) {
+}
@@ -0,0 +1,11 @@
+package spring.security.temp.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import spring.security.temp.models.JwtSigningKey;
+
+import java.util.List;
+
+public interface JwtSigningKeyRepository extends JpaRepository<JwtSigningKey, String> {
+    // oldest first, the kid breaks ties so every instance orders (and picks its signing key) the same way
+    List<JwtSigningKey> findAllByOrderByActiveFromAscKidAsc();
+}
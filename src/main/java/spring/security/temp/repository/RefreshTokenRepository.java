@@ -1,10 +1,44 @@
 package spring.security.temp.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import spring.security.temp.models.RefreshToken;
+import spring.security.temp.models.UsedRefreshToken;
 
-import java.util.Optional;
+import java.time.Instant;
+import java.util.List;
 
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
-    Optional<RefreshToken> findByToken(String token);
+    // marks the presented token used only when it is still live, in one guarded statement, so two concurrent
+    // exchanges of one token cannot both succeed: the second waits for the first's row lock and then matches
+    // nothing. Returns the token's owner and family (empty for an unknown, used, revoked or expired token).
+    // Read as a result list, so it must run inside a read-write transaction
+    @Query(value = "update refresh_token t set used_at = :now from users u " +
+            "where u.id = t.user_id and t.token_hash = :tokenHash " +
+            "and t.used_at is null and t.revoked_at is null and t.expiry_date > :now " +
+            "returning t.user_id as \"userId\", t.family_id as \"familyId\", u.email", nativeQuery = true)
+    List<UsedRefreshToken> markUsed(byte[] tokenHash, Instant now);
+
+    // a token that was already exchanged is being replayed, every token of its family stops working
+    @Modifying
+    @Query(value = "update refresh_token set revoked_at = :now " +
+            "where family_id = (select family_id from refresh_token where token_hash = :tokenHash and used_at is not null) " +
+            "and revoked_at is null", nativeQuery = true)
+    int revokeFamilyOfUsed(byte[] tokenHash, Instant now);
+
+    @Modifying
+    @Query(value = "update refresh_token set revoked_at = :now " +
+            "where family_id = (select family_id from refresh_token where token_hash = :tokenHash) " +
+            "and revoked_at is null", nativeQuery = true)
+    int revokeFamily(byte[] tokenHash, Instant now);
+
+    @Modifying
+    @Query("update RefreshToken t set t.revokedAt = :now where t.user.id = :userId and t.revokedAt is null")
+    int revokeAllForUser(Long userId, Instant now);
+
+    // keyset page of tokens that expired before the cutoff
+    @Query("select t.id from RefreshToken t where t.id > :afterId and t.expiryDate < :cutoff order by t.id")
+    List<Long> findPurgeableIds(Long afterId, Instant cutoff, Limit limit);
 }
@@ -0,0 +1,19 @@
+package spring.security.temp.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import spring.security.temp.models.TokenRevocation;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface TokenRevocationRepository extends JpaRepository<TokenRevocation, Long> {
+    // revocations made since the last sync, by this or any other instance, that still matter
+    @Query("select r from TokenRevocation r where r.revokedAt > :since and r.expiresAt > :now")
+    List<TokenRevocation> findActiveSince(Instant since, Instant now);
+
+    @Modifying
+    @Query("delete from TokenRevocation r where r.expiresAt < :now")
+    int deleteExpired(Instant now);
+}
@@ -1,10 +1,109 @@
 package spring.security.temp.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import spring.security.temp.models.FailedSignins;
 import spring.security.temp.models.User;
+import spring.security.temp.models.UserStatusChange;
+import spring.security.temp.models.UserSummaryRow;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface UserRepository extends JpaRepository<User, Long> {
+    // case-insensitive, served by the lower(email) index
+    @Query("select u from User u where lower(u.email) = lower(:email)")
     Optional<User> findByEmail(String email);
+
+    // batched existence check for the bulk import, emails must already be lower case to hit the lower(email) index
+    @Query("select lower(u.email) from User u where lower(u.email) in :emails")
+    List<String> findExistingEmails(Collection<String> emails);
+
+    // keyset pages for the admin listing: the subquery walks the primary key index from the cursor and the
+    // outer query joins the role names for just that page, so one round-trip and no entity hydration
+    @Query("select new spring.security.temp.models.UserSummaryRow(" +
+            "u.id, u.email, u.firstName, u.lastName, u.locked, u.enabled, u.isDeleted, r.name) " +
+            "from User u left join u.roles r " +
+            "where u.id in (select p.id from User p where p.id > :afterId order by p.id limit :limit) " +
+            "order by u.id")
+    List<UserSummaryRow> findSummaryRowsAfter(long afterId, int limit);
+
+    @Query("select new spring.security.temp.models.UserSummaryRow(" +
+            "u.id, u.email, u.firstName, u.lastName, u.locked, u.enabled, u.isDeleted, r.name) " +
+            "from User u left join u.roles r " +
+            "where u.id in (select p.id from User p where p.id < :beforeId order by p.id desc limit :limit) " +
+            "order by u.id desc")
+    List<UserSummaryRow> findSummaryRowsBefore(long beforeId, int limit);
+
+    // forward-only cursor for the export, the driver pulls fetchSize rows per round-trip instead of the whole
+    // result; must be consumed inside a transaction and closed
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select new spring.security.temp.models.UserSummaryRow(" +
+            "u.id, u.email, u.firstName, u.lastName, u.locked, u.enabled, u.isDeleted, r.name) " +
+            "from User u left join u.roles r " +
+            "where (:locked is null or u.locked = :locked) " +
+            "and (:enabled is null or u.enabled = :enabled) " +
+            "and (:deleted is null or u.isDeleted = :deleted) " +
+            "order by u.id")
+    Stream<UserSummaryRow> streamSummaryRows(Boolean locked, Boolean enabled, Boolean deleted);
+
+    // keyset page of the users a bulk status update by filter applies to
+    @Query("select u.id from User u " +
+            "where u.id > :afterId " +
+            "and (:locked is null or u.locked = :locked) " +
+            "and (:enabled is null or u.enabled = :enabled) " +
+            "and (:deleted is null or u.isDeleted = :deleted) " +
+            "order by u.id")
+    List<Long> findIdsMatching(long afterId, Boolean locked, Boolean enabled, Boolean deleted, Limit limit);
+
+    // one statement per batch: only rows whose status really changes are touched and get a new status version,
+    // RETURNING hands back what the caches need to drop without a second query (so it is read as a result
+    // list rather than declared @Modifying)
+    @Query(value = "update users set " +
+            "locked = coalesce(cast(:locked as boolean), locked), " +
+            "enabled = coalesce(cast(:enabled as boolean), enabled), " +
+            "locked_until = case when cast(:locked as boolean) is null then locked_until end, " +
+            "status_version = coalesce(status_version, 0) + 1 " +
+            "where id in (:ids) " +
+            "and (locked is distinct from coalesce(cast(:locked as boolean), locked) " +
+            "or enabled is distinct from coalesce(cast(:enabled as boolean), enabled)) " +
+            "returning id, email, status_version as \"statusVersion\"", nativeQuery = true)
+    List<UserStatusChange> updateStatus(List<Long> ids, Boolean locked, Boolean enabled);
+
+    long countByIdIn(Collection<Long> ids);
+
+    // one atomic statement so concurrent failed signins cannot lose a count, returns the stored email and the new
+    // count (empty for an unknown email); must run inside a read-write transaction
+    @Query(value = "update users set failed_signin_attempts = failed_signin_attempts + 1 " +
+            "where lower(email) = lower(:email) " +
+            "returning email, failed_signin_attempts as \"failedSigninAttempts\"", nativeQuery = true)
+    List<FailedSignins> incrementFailedSignins(String email);
+
+    // clears the persistence context, the signin request may already hold this user with the old values
+    @Modifying(clearAutomatically = true)
+    @Query("update User u set u.locked = true, u.lockedUntil = :until where lower(u.email) = lower(:email)")
+    int lockUntil(String email, Instant until);
+
+    // clears the failure count and any timed lockout after a successful signin, admin locks are left alone;
+    // matches no row (and writes nothing) when there is nothing to clear
+    @Modifying
+    @Query("update User u set u.failedSigninAttempts = 0, " +
+            "u.locked = case when u.lockedUntil is null then u.locked else false end, u.lockedUntil = null " +
+            "where u.id = :id and (u.failedSigninAttempts <> 0 or u.lockedUntil is not null)")
+    int resetFailedSignins(Long id);
+
+    // planner statistics, refreshed by autovacuum/analyze; negative until the table was first analyzed
+    @Query(value = "select cast(reltuples as bigint) from pg_class where oid = cast('users' as regclass)", nativeQuery = true)
+    long estimateCount();
 }
@@ -0,0 +1,103 @@
+package spring.security.temp.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import spring.security.temp.email.EmailSender;
+import spring.security.temp.email.EmailTemplate;
+import spring.security.temp.models.FailedSignins;
+import spring.security.temp.models.User;
+import spring.security.temp.models.UserAccountChangedEvent;
+import spring.security.temp.repository.UserRepository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+// progressive lockout: every lockoutThreshold consecutive failed signins lock the account for twice as long as
+// the previous lock, up to lockoutMaxMs; a successful signin resets the count
+@Service
+public class AccountLockoutService {
+    private final UserRepository userRepository;
+    private final UserCache userCache;
+    private final EmailSender emailSender;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter lockouts;
+
+    @Value("${app.lockoutThreshold}")
+    private int threshold;
+
+    @Value("${app.lockoutBaseMs}")
+    private long baseMs;
+
+    @Value("${app.lockoutMaxMs}")
+    private long maxMs;
+
+    public AccountLockoutService(UserRepository userRepository, UserCache userCache, EmailSender emailSender,
+                                 ApplicationEventPublisher eventPublisher, TransactionTemplate transactionTemplate,
+                                 MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.userCache = userCache;
+        this.emailSender = emailSender;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.lockouts = Counter.builder("signin.lockouts")
+                .description("Accounts locked after repeated failed signins")
+                .register(meterRegistry);
+    }
+
+    public void recordFailure(String email) {
+        Failure failure = transactionTemplate.execute(status -> {
+            List<FailedSignins> counts = userRepository.incrementFailedSignins(email);
+            if (counts.isEmpty()) {
+                return null;
+            }
+            // the signin may have used any casing, the caches are keyed by the stored email
+            String storedEmail = counts.getFirst().getEmail();
+            int failedSignins = counts.getFirst().getFailedSigninAttempts();
+            if (failedSignins % threshold != 0) {
+                return new Failure(storedEmail, null);
+            }
+            userRepository.lockUntil(storedEmail, Instant.now().plusMillis(lockDurationMs(failedSignins / threshold)));
+            User user = userRepository.findByEmail(storedEmail).orElseThrow();
+            emailSender.send(user.getEmail(), EmailTemplate.ACCOUNT_LOCKED, Map.of("name", user.getFirstName()));
+            return new Failure(storedEmail, user);
+        });
+        if (failure == null) {
+            return;
+        }
+        if (failure.locked() != null) {
+            lockouts.increment();
+            // the status version is left alone: sessions the owner already has stay valid, only new signins are refused
+            eventPublisher.publishEvent(UserAccountChangedEvent.of(failure.locked()));
+        } else {
+            // the cached principal carries the old count
+            userCache.removeUserFromCache(failure.email());
+        }
+    }
+
+    // the principal may come from the cache (or have been cached before another instance counted a failure),
+    // so the database decides whether there is anything to clear; the common signin updates no row
+    public void recordSuccess(User user) {
+        Integer cleared = transactionTemplate.execute(status -> userRepository.resetFailedSignins(user.getId()));
+        if (cleared == null || cleared == 0) {
+            return;
+        }
+        user.setFailedSigninAttempts(0);
+        user.setLockedUntil(null);
+        eventPublisher.publishEvent(UserAccountChangedEvent.of(user));
+    }
+
+    private long lockDurationMs(int lockNumber) {
+        int doublings = Math.min(lockNumber - 1, 30);
+        return Math.min(maxMs, baseMs << doublings);
+    }
+
+    private record Failure(String email, User locked) {
+    }
+}
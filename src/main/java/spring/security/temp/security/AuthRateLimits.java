@@ -0,0 +1,52 @@
+package spring.security.temp.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+
+// the limiters in front of signin and resend-verification: per client IP (checked in RateLimitFilter before the
+// body is read) and per account (checked in AuthenticationService before any lookup or hashing)
+@Component
+public class AuthRateLimits {
+    private final RateLimiter signinPerIp;
+    private final RateLimiter signinPerAccount;
+    private final RateLimiter resendPerIp;
+    private final RateLimiter resendPerAccount;
+
+    public AuthRateLimits(@Value("${app.rateLimitPeriodMs}") long periodMs,
+                          @Value("${app.rateLimitMaxKeys}") long maxKeys,
+                          @Value("${app.rateLimitSigninPerIp}") int signinPerIp,
+                          @Value("${app.rateLimitSigninPerAccount}") int signinPerAccount,
+                          @Value("${app.rateLimitResendPerIp}") int resendPerIp,
+                          @Value("${app.rateLimitResendPerAccount}") int resendPerAccount,
+                          MeterRegistry meterRegistry) {
+        Duration period = Duration.ofMillis(periodMs);
+        this.signinPerIp = new RateLimiter("signin-ip", signinPerIp, period, maxKeys, meterRegistry);
+        this.signinPerAccount = new RateLimiter("signin-account", signinPerAccount, period, maxKeys, meterRegistry);
+        this.resendPerIp = new RateLimiter("resend-ip", resendPerIp, period, maxKeys, meterRegistry);
+        this.resendPerAccount = new RateLimiter("resend-account", resendPerAccount, period, maxKeys, meterRegistry);
+    }
+
+    public void checkSigninIp(String ip) {
+        signinPerIp.acquire(ip);
+    }
+
+    public void checkSigninAccount(String email) {
+        signinPerAccount.acquire(accountKey(email));
+    }
+
+    public void checkResendIp(String ip) {
+        resendPerIp.acquire(ip);
+    }
+
+    public void checkResendAccount(String email) {
+        resendPerAccount.acquire(accountKey(email));
+    }
+
+    private static String accountKey(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,42 @@
+package spring.security.temp.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+// picks the highest BCrypt cost whose encode time on this host stays within the target
+public final class BCryptCostCalibrator {
+    private final static Logger LOGGER = LoggerFactory.getLogger(BCryptCostCalibrator.class);
+    private static final int MAX_STRENGTH = 16;
+    private static final String SAMPLE_PASSWORD = "calibration-sample-password";
+
+    private BCryptCostCalibrator() {
+    }
+
+    public static int calibrate(long targetMs, int minStrength) {
+        // the first hash pays for class loading and JIT, don't let it skew the result
+        new BCryptPasswordEncoder(4).encode(SAMPLE_PASSWORD);
+
+        int chosen = minStrength;
+        for (int strength = minStrength; strength <= MAX_STRENGTH; strength++) {
+            long elapsedMs = timeEncode(strength);
+            if (elapsedMs > targetMs) {
+                break;
+            }
+            chosen = strength;
+            // each step doubles the cost, stop once the next one is certain to overshoot
+            if (elapsedMs * 2 > targetMs) {
+                break;
+            }
+        }
+        LOGGER.info("BCrypt cost calibrated to {} for a {} ms target", chosen, targetMs);
+        return chosen;
+    }
+
+    private static long timeEncode(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        long start = System.nanoTime();
+        encoder.encode(SAMPLE_PASSWORD);
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
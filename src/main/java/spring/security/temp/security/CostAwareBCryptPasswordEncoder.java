@@ -0,0 +1,31 @@
+package spring.security.temp.security;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+// BCryptPasswordEncoder only upgrades hashes weaker than its strength, this also rehashes stronger ones
+// so lowering the configured cost takes effect on the next signin too
+public class CostAwareBCryptPasswordEncoder extends BCryptPasswordEncoder {
+    private final int strength;
+
+    public CostAwareBCryptPasswordEncoder(int strength) {
+        super(strength);
+        this.strength = strength;
+    }
+
+    @Override
+    protected boolean upgradeEncodingNonNull(String encodedPassword) {
+        return storedCost(encodedPassword) != strength;
+    }
+
+    // hashes look like $2a$10$<salt+hash>, the cost is the two digits after the version
+    static int storedCost(String encodedPassword) {
+        if (encodedPassword.length() < 7 || encodedPassword.charAt(0) != '$' || encodedPassword.charAt(3) != '$') {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(encodedPassword.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
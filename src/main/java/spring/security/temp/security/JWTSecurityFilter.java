@@ -1,29 +1,62 @@
 package spring.security.temp.security;
 
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.RequiredArgsConstructor;
 import org.jspecify.annotations.NonNull;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import spring.security.temp.models.User;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 @Component
-@RequiredArgsConstructor
 public class JWTSecurityFilter extends OncePerRequestFilter {
 
     private final UserDetailsService userDetailsService;
 
     private final JwtService jwtService;
 
+    private final UserStatusRegistry userStatusRegistry;
+
+    private final TokenRevocationList tokenRevocationList;
+
+    // token checks by outcome, so the count of each timer is also the number of tokens rejected for that reason
+    private final Timer validTokens;
+    private final Timer invalidTokens;
+    private final Timer expiredTokens;
+    private final Timer revokedTokens;
+
+    // when on, requests are authenticated from the token claims and the DB is only hit for stale tokens
+    @Value("${app.jwtStatelessAuth:false}")
+    private boolean statelessAuth;
+
+    public JWTSecurityFilter(UserDetailsService userDetailsService, JwtService jwtService,
+                             UserStatusRegistry userStatusRegistry, TokenRevocationList tokenRevocationList,
+                             MeterRegistry meterRegistry) {
+        this.userDetailsService = userDetailsService;
+        this.jwtService = jwtService;
+        this.userStatusRegistry = userStatusRegistry;
+        this.tokenRevocationList = tokenRevocationList;
+        this.validTokens = verifyTimer("valid", meterRegistry);
+        this.invalidTokens = verifyTimer("invalid", meterRegistry);
+        this.expiredTokens = verifyTimer("expired", meterRegistry);
+        this.revokedTokens = verifyTimer("revoked", meterRegistry);
+    }
+
     @Override // request and response are the ones passed by the user, so a user can intercept a request
     protected void doFilterInternal(@NonNull HttpServletRequest request,
                                     @NonNull HttpServletResponse response,
@@ -40,27 +73,84 @@ public class JWTSecurityFilter extends OncePerRequestFilter {
         // checking token
         final String authHeader = request.getHeader("Authorization");
         final String jwtToken;
-        final String userEmail;
+        final VerifiedClaims claims;
         if (authHeader==null || !authHeader.startsWith("Bearer")){
             filterChain.doFilter(request, response);
             return;
         }
         jwtToken = authHeader.substring(7);
-        userEmail = jwtService.extractUsername(jwtToken); // this is going to be extracted from the token
-        if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null){
-
-            //  return "User not authenticated"
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
-            if (jwtService.isTokenValid(jwtToken, userDetails)){
-                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                        userDetails,
-                        null,
-                        userDetails.getAuthorities());
+        long start = System.nanoTime();
+        try {
+            claims = jwtService.verify(jwtToken); // signature and expiry are checked once here
+        } catch (ExpiredJwtException e) {
+            expiredTokens.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            filterChain.doFilter(request, response);
+            return;
+        } catch (JwtException | IllegalArgumentException e) {
+            invalidTokens.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (tokenRevocationList.isRevoked(claims)) { // logged out, or the user was locked or deleted since
+            revokedTokens.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            filterChain.doFilter(request, response);
+            return;
+        }
+        validTokens.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (claims.subject() != null && SecurityContextHolder.getContext().getAuthentication() == null){
+            UsernamePasswordAuthenticationToken authToken;
+            try {
+                authToken = statelessAuth
+                        ? authenticateFromClaims(claims)
+                        : authenticateFromDatabase(claims);
+            } catch (UsernameNotFoundException e) {
+                authToken = null; // the token outlived its user (deleted or email changed)
+            }
+            if (authToken != null){
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authToken);
             }
         }
         filterChain.doFilter(request, response);
     }
-}
 
+    // the token is trusted as long as its status version matches the last one seen for the user,
+    // otherwise the user is reloaded once and the new version remembered
+    private UsernamePasswordAuthenticationToken authenticateFromClaims(VerifiedClaims claims) {
+        if (claims.userId() == null || claims.statusVersion() == null) {
+            return authenticateFromDatabase(claims);
+        }
+        if (!userStatusRegistry.isCurrent(claims.userId(), claims.statusVersion())) {
+            UserDetails userDetails = this.userDetailsService.loadUserByUsername(claims.subject());
+            if (userDetails instanceof User user) {
+                userStatusRegistry.record(user.getId(), user.getStatusVersion());
+            }
+            if (!userStatusRegistry.isCurrent(claims.userId(), claims.statusVersion()) || !isActive(userDetails)) {
+                return null;
+            }
+        }
+        return new UsernamePasswordAuthenticationToken(claims.subject(), null, claims.authorities());
+    }
+
+    private UsernamePasswordAuthenticationToken authenticateFromDatabase(VerifiedClaims claims) {
+        UserDetails userDetails = this.userDetailsService.loadUserByUsername(claims.subject());
+        if (!claims.subject().equals(userDetails.getUsername()) || !isActive(userDetails)) {
+            return null;
+        }
+        return new UsernamePasswordAuthenticationToken(
+                userDetails,
+                null,
+                userDetails.getAuthorities());
+    }
+
+    private boolean isActive(UserDetails userDetails) {
+        return userDetails.isEnabled() && userDetails.isAccountNonLocked();
+    }
+
+    private static Timer verifyTimer(String outcome, MeterRegistry meterRegistry) {
+        return Timer.builder("auth.token.verify")
+                .description("Time taken to verify a bearer token, cache hits included")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
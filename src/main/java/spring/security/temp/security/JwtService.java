@@ -1,81 +1,152 @@
 package spring.security.temp.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.security.SignatureException;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
+import spring.security.temp.models.User;
 
 import java.security.Key;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.UUID;
 
 @Service
 public class JwtService {
-    @Value(value = "${app.jwtSecret}")
-    private String secretKey;
-    
+    static final String ROLES_CLAIM = "roles";
+    static final String USER_ID_CLAIM = "uid";
+    static final String STATUS_VERSION_CLAIM = "ver";
+
     @Value("${app.jwtExpirationMs}")
     private long jwtExpirationMs;
 
-    public String extractUsername(String jwtToken) {
-        return extractClaim(jwtToken, Claims::getSubject);
+    // parsers are immutable and thread-safe so every request can share this one, the key comes from the token's kid
+    private final JwtParser jwtParser;
+
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final SigningKeyRing signingKeyRing;
+
+    public JwtService(VerifiedTokenCache verifiedTokenCache, SigningKeyRing signingKeyRing) {
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.signingKeyRing = signingKeyRing;
+        this.jwtParser = Jwts
+                .parserBuilder()
+                .setSigningKeyResolver(new KeyRingResolver(signingKeyRing))
+                .build();
     }
 
     // to generate the user's jwt token
+    // roles mirror the principal's authorities so claims-only and DB-backed authentication grant the same access
     public String generateToken(UserDetails userDetails) {
-        return generateToken(new HashMap<>(), userDetails);
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(ROLES_CLAIM, userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList());
+        if (userDetails instanceof User user) {
+            claims.put(USER_ID_CLAIM, user.getId());
+            claims.put(STATUS_VERSION_CLAIM, user.getStatusVersion() == null ? 0L : user.getStatusVersion());
+        }
+        return generateToken(claims, userDetails);
     }
 
     public String generateToken(Map<String, Object> extraClaims, UserDetails userDetails) {
+        SigningKeyRing.SigningKey signingKey = signingKeyRing.signingKey();
         return Jwts
                 .builder()
+                .setHeaderParam(JwsHeader.KEY_ID, signingKey.kid())
                 .setClaims(extraClaims)
                 .setSubject(userDetails.getUsername())
+                .setId(UUID.randomUUID().toString()) // jti, lets a single token be revoked
                 .setIssuedAt(new Date(System.currentTimeMillis())) // check the expiration date to know if it has expired or not
                 .setExpiration(new Date(System.currentTimeMillis() + jwtExpirationMs))
-                .signWith(getSignInKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey.privateKey(), SignatureAlgorithm.ES256)
                 .compact();
     }
 
-    public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
-    }
+    public boolean isTokenValid(String token, UserDetails userDetails) {
+        final VerifiedClaims claims = verify(token);
+        return claims.subject().equals(userDetails.getUsername()) && !claims.isExpired();
 
-    public boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
     }
 
-    public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return username.equals(userDetails.getUsername()) && !isTokenExpired(token);
-
+    // checks the signature and parses the token once, throws JwtException if the token is invalid or expired
+    // repeat calls with the same token are served from the cache until the token expires
+    public VerifiedClaims verify(String token) {
+        VerifiedClaims cached = verifiedTokenCache.get(token);
+        if (cached != null) {
+            return cached;
+        }
+        VerifiedClaims claims = parseClaims(token);
+        verifiedTokenCache.put(token, claims);
+        return claims;
     }
 
-    // claims
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
+    private VerifiedClaims parseClaims(String token) {
         final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+        return new VerifiedClaims(
+                claims.getSubject(),
+                claims.getExpiration().toInstant(),
+                extractAuthorities(claims),
+                extractLong(claims, USER_ID_CLAIM),
+                extractLong(claims, STATUS_VERSION_CLAIM),
+                claims.getId(),
+                claims.getIssuedAt() == null ? null : claims.getIssuedAt().toInstant());
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
+        return jwtParser
                 .parseClaimsJws(token)
                 .getBody();
     }
 
-    // signin key
-    private Key getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private List<GrantedAuthority> extractAuthorities(Claims claims) {
+        Object roles = claims.get(ROLES_CLAIM);
+        if (!(roles instanceof Collection<?> names)) {
+            return List.of();
+        }
+        List<GrantedAuthority> authorities = new ArrayList<>(names.size());
+        for (Object name : names) {
+            authorities.add(new SimpleGrantedAuthority(String.valueOf(name)));
+        }
+        return authorities;
+    }
+
+    private Long extractLong(Claims claims, String name) {
+        Object value = claims.get(name);
+        return value instanceof Number number ? number.longValue() : null;
+    }
+
+    // verification keys are looked up by kid, so tokens signed before a rotation stay valid until they expire
+    private static final class KeyRingResolver extends SigningKeyResolverAdapter {
+        private final SigningKeyRing signingKeyRing;
+
+        private KeyRingResolver(SigningKeyRing signingKeyRing) {
+            this.signingKeyRing = signingKeyRing;
+        }
+
+        @Override
+        public Key resolveSigningKey(JwsHeader header, Claims claims) {
+            if (!SignatureAlgorithm.ES256.getValue().equals(header.getAlgorithm())) {
+                throw new UnsupportedJwtException("Unexpected signing algorithm " + header.getAlgorithm());
+            }
+            Key key = header.getKeyId() == null ? null : signingKeyRing.verificationKey(header.getKeyId());
+            if (key == null) {
+                throw new SignatureException("Unknown signing key " + header.getKeyId());
+            }
+            return key;
+        }
     }
-    
-}
\ No newline at end of file
+}
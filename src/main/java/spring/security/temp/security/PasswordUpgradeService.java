@@ -0,0 +1,33 @@
+package spring.security.temp.security;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.stereotype.Service;
+import spring.security.temp.exceptions.ResourceNotFoundException;
+import spring.security.temp.models.User;
+import spring.security.temp.models.UserAccountChangedEvent;
+import spring.security.temp.repository.UserRepository;
+
+// called by DaoAuthenticationProvider after a successful signin whose stored hash uses an outdated algorithm or cost
+@Service
+public class PasswordUpgradeService implements UserDetailsPasswordService {
+    private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public PasswordUpgradeService(UserRepository userRepository, ApplicationEventPublisher eventPublisher) {
+        this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    // same password, new hash, so the status version stays as is and issued tokens remain valid
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findByEmail(userDetails.getUsername())
+                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        user.setPassword(newPassword);
+        userRepository.save(user);
+        eventPublisher.publishEvent(UserAccountChangedEvent.of(user));
+        return user;
+    }
+}
@@ -0,0 +1,51 @@
+package spring.security.temp.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.jspecify.annotations.NonNull;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import spring.security.temp.exceptions.TooManyRequestsException;
+
+import java.io.IOException;
+
+// per-IP throttling for the unauthenticated endpoints that cost a BCrypt check or an email, runs before the body
+// is parsed; getRemoteAddr honours X-Forwarded-For when server.forward-headers-strategy is set behind a proxy
+@Component
+@RequiredArgsConstructor
+public class RateLimitFilter extends OncePerRequestFilter {
+    private static final String SIGNIN_PATH = "/api/v1/auth/signin";
+    private static final String RESEND_PATH = "/api/v1/auth/resend-verification";
+
+    private final AuthRateLimits authRateLimits;
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        String path = request.getServletPath();
+        return !"POST".equals(request.getMethod()) || !(path.equals(SIGNIN_PATH) || path.equals(RESEND_PATH));
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain)
+            throws ServletException, IOException {
+        try {
+            if (request.getServletPath().equals(SIGNIN_PATH)) {
+                authRateLimits.checkSigninIp(request.getRemoteAddr());
+            } else {
+                authRateLimits.checkResendIp(request.getRemoteAddr());
+            }
+        } catch (TooManyRequestsException e) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), e.getReason());
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,72 @@
+package spring.security.temp.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import spring.security.temp.exceptions.TooManyRequestsException;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// token bucket per key in its GCRA form: each key is a single AtomicLong holding the time the bucket is next full,
+// updated with a CAS loop so there are no locks; Caffeine's striped map holds the keys and drops idle ones
+public class RateLimiter {
+    private final String name;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final Cache<String, AtomicLong> buckets;
+    private final Counter rejected;
+
+    // permits requests per period, all of them may arrive at once
+    public RateLimiter(String name, int permits, Duration period, long maxKeys, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.intervalNanos = period.toNanos() / permits;
+        this.burstNanos = intervalNanos * permits;
+        // a key idle for a whole period has a full bucket again, so forgetting it changes nothing
+        this.buckets = Caffeine.newBuilder()
+                .expireAfterAccess(period)
+                .maximumSize(maxKeys)
+                .build();
+        this.rejected = Counter.builder("ratelimit.rejected")
+                .description("Requests turned away by a rate limiter")
+                .tag("limiter", name)
+                .register(meterRegistry);
+        meterRegistry.gauge("ratelimit.keys", Tags.of("limiter", name), buckets,
+                cache -> cache.estimatedSize());
+    }
+
+    // throws TooManyRequestsException when the key has used up its permits
+    public void acquire(String key) {
+        long waitNanos = tryAcquire(key);
+        if (waitNanos > 0) {
+            rejected.increment();
+            throw new TooManyRequestsException("Too many requests, try again later",
+                    Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999)));
+        }
+    }
+
+    // 0 when allowed, otherwise how long until the next permit
+    public long tryAcquire(String key) {
+        long now = System.nanoTime();
+        AtomicLong full = buckets.get(key, k -> new AtomicLong(now));
+        while (true) {
+            long current = full.get();
+            long start = current - now > 0 ? current : now;
+            long next = start + intervalNanos;
+            long waitNanos = next - now - burstNanos;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (full.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+}
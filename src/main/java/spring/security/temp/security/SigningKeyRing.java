@@ -0,0 +1,287 @@
+package spring.security.temp.security;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import spring.security.temp.models.JwtSigningKey;
+import spring.security.temp.repository.JwtSigningKeyRepository;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// ES256 (P-256) key pairs for signing access tokens, identified by their RFC 7638 thumbprint as the kid.
+// The ring lives in the jwt_signing_key table so every instance signs with, accepts and publishes the same keys;
+// each instance reloads it every jwtKeyRingCheckMs. A rotated-in key is stored a check interval plus one jwksMaxAge
+// before it starts signing, so every instance and every verifier that cached the previous JWKS knows it by then;
+// a replaced key stays until every token it signed has expired. Instances that rotate at the same moment both
+// store a key, which is harmless: all of them pick the same (newest) one to sign with.
+// With app.jwtPrivateKey/app.jwtPublicKey configured the ring is just that key, never rotated and not stored
+@Component
+public class SigningKeyRing {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SigningKeyRing.class);
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+    private final JwtSigningKeyRepository signingKeyRepository;
+
+    // oldest first, replaced as a whole so readers never see a half-updated ring
+    private volatile List<SigningKey> keys = List.of();
+    private volatile Map<String, Object> jwks = Map.of("keys", List.of());
+    private boolean configured;
+
+    @Value("${app.jwtPrivateKey:}")
+    private String configuredPrivateKey;
+
+    @Value("${app.jwtPublicKey:}")
+    private String configuredPublicKey;
+
+    @Value("${app.jwtKeyRotationMs}")
+    private long rotationMs;
+
+    @Value("${app.jwksMaxAgeSeconds}")
+    private long jwksMaxAgeSeconds;
+
+    @Value("${app.jwtKeyRingCheckMs}")
+    private long checkMs;
+
+    @Value("${app.jwtExpirationMs}")
+    private long jwtExpirationMs;
+
+    public SigningKeyRing(JwtSigningKeyRepository signingKeyRepository) {
+        this.signingKeyRepository = signingKeyRepository;
+    }
+
+    public record SigningKey(String kid, PrivateKey privateKey, PublicKey publicKey, Instant activeFrom,
+                             Instant createdAt) {
+    }
+
+    @PostConstruct
+    void init() {
+        if (!configuredPrivateKey.isBlank()) {
+            configured = true;
+            KeyPair keyPair = load(configuredPrivateKey, configuredPublicKey);
+            publish(List.of(new SigningKey(thumbprint((ECPublicKey) keyPair.getPublic()), keyPair.getPrivate(),
+                    keyPair.getPublic(), Instant.EPOCH, Instant.now())));
+            if (rotationMs > 0) {
+                LOGGER.info("JWT signing key is configured, app.jwtKeyRotationMs is ignored");
+            }
+            return;
+        }
+        publish(loadStored());
+    }
+
+    // the newest key that has been published for long enough
+    public SigningKey signingKey() {
+        Instant now = Instant.now();
+        List<SigningKey> current = keys;
+        for (int i = current.size() - 1; i >= 0; i--) {
+            if (!current.get(i).activeFrom().isAfter(now)) {
+                return current.get(i);
+            }
+        }
+        return current.getFirst();
+    }
+
+    // null for a kid this instance never issued or already retired
+    public PublicKey verificationKey(String kid) {
+        for (SigningKey key : keys) {
+            if (key.kid().equals(kid)) {
+                return key.publicKey();
+            }
+        }
+        return null;
+    }
+
+    public Map<String, Object> jwks() {
+        return jwks;
+    }
+
+    public long jwksMaxAgeSeconds() {
+        return jwksMaxAgeSeconds;
+    }
+
+    // stores a key that takes over signing once every instance and verifier has had a chance to pick it up
+    public synchronized void rotate() {
+        if (configured) {
+            throw new IllegalStateException("the configured JWT signing key is not rotated");
+        }
+        Instant activeFrom = Instant.now().plusSeconds(jwksMaxAgeSeconds).plusMillis(checkMs);
+        SigningKey key = store(generate(), activeFrom);
+        publish(loadStored());
+        LOGGER.info("rotated JWT signing key, {} takes over at {}", key.kid(), activeFrom);
+    }
+
+    // picks up keys rotated or retired by other instances; rotation is off when rotationMs is 0
+    @Scheduled(fixedDelayString = "${app.jwtKeyRingCheckMs}", initialDelayString = "${app.jwtKeyRingCheckMs}")
+    public synchronized void maintain() {
+        if (configured) {
+            return;
+        }
+        Instant now = Instant.now();
+        List<SigningKey> stored = loadStored();
+        SigningKey newest = stored.getLast();
+        if (rotationMs > 0 && newest.createdAt().plusMillis(rotationMs).isBefore(now)) {
+            rotate();
+            stored = keys;
+        }
+        List<String> retired = retired(stored, now);
+        if (!retired.isEmpty()) {
+            signingKeyRepository.deleteAllByIdInBatch(retired);
+            stored = loadStored();
+        }
+        publish(stored);
+    }
+
+    // a key can go once its successor has been signing for longer than a token lives
+    private List<String> retired(List<SigningKey> current, Instant now) {
+        Duration tokenLifetime = Duration.ofMillis(jwtExpirationMs);
+        List<String> retired = new ArrayList<>();
+        for (int i = 0; i + 1 < current.size(); i++) {
+            if (current.get(i + 1).activeFrom().plus(tokenLifetime).isBefore(now)) {
+                retired.add(current.get(i).kid());
+            }
+        }
+        return retired;
+    }
+
+    // the first instance to start (or any instance after the table was emptied) stores a key that signs right away
+    private List<SigningKey> loadStored() {
+        List<JwtSigningKey> rows = signingKeyRepository.findAllByOrderByActiveFromAscKidAsc();
+        if (rows.isEmpty()) {
+            store(generate(), Instant.EPOCH);
+            rows = signingKeyRepository.findAllByOrderByActiveFromAscKidAsc();
+        }
+        List<SigningKey> stored = new ArrayList<>(rows.size());
+        for (JwtSigningKey row : rows) {
+            stored.add(decode(row));
+        }
+        return stored;
+    }
+
+    private SigningKey store(KeyPair keyPair, Instant activeFrom) {
+        SigningKey key = new SigningKey(thumbprint((ECPublicKey) keyPair.getPublic()), keyPair.getPrivate(),
+                keyPair.getPublic(), activeFrom, Instant.now());
+        signingKeyRepository.save(new JwtSigningKey(key.kid(), keyPair.getPrivate().getEncoded(),
+                keyPair.getPublic().getEncoded(), key.activeFrom(), key.createdAt()));
+        return key;
+    }
+
+    private static SigningKey decode(JwtSigningKey row) {
+        try {
+            KeyFactory keyFactory = KeyFactory.getInstance("EC");
+            return new SigningKey(row.getKid(),
+                    keyFactory.generatePrivate(new PKCS8EncodedKeySpec(row.getPrivateKey())),
+                    keyFactory.generatePublic(new X509EncodedKeySpec(row.getPublicKey())),
+                    row.getActiveFrom(), row.getCreatedAt());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("stored JWT signing key " + row.getKid() + " is not an EC key pair", e);
+        }
+    }
+
+    private void publish(List<SigningKey> next) {
+        List<Map<String, Object>> jwkList = new ArrayList<>(next.size());
+        for (SigningKey key : next) {
+            jwkList.add(jwk(key));
+        }
+        keys = List.copyOf(next);
+        jwks = Map.of("keys", List.copyOf(jwkList));
+    }
+
+    private static Map<String, Object> jwk(SigningKey key) {
+        ECPoint point = ((ECPublicKey) key.publicKey()).getW();
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        jwk.put("kty", "EC");
+        jwk.put("crv", "P-256");
+        jwk.put("kid", key.kid());
+        jwk.put("use", "sig");
+        jwk.put("alg", "ES256");
+        jwk.put("x", BASE64URL.encodeToString(coordinate(point.getAffineX())));
+        jwk.put("y", BASE64URL.encodeToString(coordinate(point.getAffineY())));
+        return Collections.unmodifiableMap(jwk);
+    }
+
+    // RFC 7638: SHA-256 over the required members in lexicographic order
+    private static String thumbprint(ECPublicKey publicKey) {
+        ECPoint point = publicKey.getW();
+        String json = "{\"crv\":\"P-256\",\"kty\":\"EC\",\"x\":\""
+                + BASE64URL.encodeToString(coordinate(point.getAffineX()))
+                + "\",\"y\":\"" + BASE64URL.encodeToString(coordinate(point.getAffineY())) + "\"}";
+        try {
+            return BASE64URL.encodeToString(MessageDigest.getInstance("SHA-256").digest(json.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // unsigned big-endian, left-padded to the 32 bytes of a P-256 coordinate
+    private static byte[] coordinate(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        byte[] fixed = new byte[32];
+        int length = Math.min(bytes.length, 32);
+        System.arraycopy(bytes, bytes.length - length, fixed, 32 - length, length);
+        return fixed;
+    }
+
+    private static KeyPair generate() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("P-256 keys not available", e);
+        }
+    }
+
+    // base64 PKCS#8 private and X.509 public key (PEM bodies, headers are ignored), checked to be one P-256 pair
+    private static KeyPair load(String base64Pkcs8, String base64X509) {
+        try {
+            KeyFactory keyFactory = KeyFactory.getInstance("EC");
+            PrivateKey privateKey = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(pemBody(base64Pkcs8)));
+            PublicKey publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(pemBody(base64X509)));
+            if (((ECPublicKey) publicKey).getParams().getOrder().bitLength() != 256) {
+                throw new IllegalStateException("app.jwtPrivateKey must be a P-256 key");
+            }
+            byte[] probe = "jwt-key-check".getBytes(StandardCharsets.US_ASCII);
+            Signature signer = Signature.getInstance("SHA256withECDSA");
+            signer.initSign(privateKey);
+            signer.update(probe);
+            byte[] signature = signer.sign();
+            Signature verifier = Signature.getInstance("SHA256withECDSA");
+            verifier.initVerify(publicKey);
+            verifier.update(probe);
+            if (!verifier.verify(signature)) {
+                throw new IllegalStateException("app.jwtPublicKey does not belong to app.jwtPrivateKey");
+            }
+            return new KeyPair(publicKey, privateKey);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("app.jwtPrivateKey/app.jwtPublicKey are not a base64 EC key pair", e);
+        }
+    }
+
+    private static byte[] pemBody(String pem) {
+        return Base64.getDecoder().decode(pem.replaceAll("-----[A-Z ]+-----|\\s", ""));
+    }
+}
@@ -0,0 +1,173 @@
+package spring.security.temp.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import spring.security.temp.models.TokenRevocation;
+import spring.security.temp.repository.TokenRevocationRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// revoked access tokens, checked on every authenticated request: a Bloom filter answers "not revoked" for almost
+// every token without touching the exact map, which is only consulted on a filter hit. Revoking a user stores a
+// cutoff instead, tokens issued before it are rejected; a status version change stores the new version, tokens
+// carrying an older one are rejected. Everything is persisted, loaded at startup and re-synced
+// every revocationSyncMs so revocations made on other instances apply here too; entries are dropped once the
+// tokens they cover have expired
+@Component
+public class TokenRevocationList {
+    // rows written just before a sync can commit just after it, so each sync looks back this far
+    private static final Duration SYNC_OVERLAP = Duration.ofMinutes(1);
+
+    private final TokenRevocationRepository tokenRevocationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final UserDetailsCache userDetailsCache;
+    private final Map<String, Instant> revokedTokens = new ConcurrentHashMap<>();
+    private final Map<Long, Revocation> revokedUsers = new ConcurrentHashMap<>();
+    private final Map<Long, StatusVersion> currentVersions = new ConcurrentHashMap<>();
+    private volatile BloomFilter bloomFilter;
+    private volatile Instant lastSync = Instant.EPOCH;
+
+    @Value("${app.revocationExpectedTokens}")
+    private long expectedTokens;
+
+    @Value("${app.jwtExpirationMs}")
+    private long jwtExpirationMs;
+
+    public TokenRevocationList(TokenRevocationRepository tokenRevocationRepository,
+                               TransactionTemplate transactionTemplate,
+                               UserDetailsCache userDetailsCache,
+                               MeterRegistry meterRegistry) {
+        this.tokenRevocationRepository = tokenRevocationRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.userDetailsCache = userDetailsCache;
+        meterRegistry.gaugeMapSize("tokens.revoked", List.of(), revokedTokens);
+        meterRegistry.gaugeMapSize("users.revoked", List.of(), revokedUsers);
+    }
+
+    @PostConstruct
+    void load() {
+        bloomFilter = new BloomFilter(expectedTokens, 0.01);
+        sync();
+    }
+
+    // lock-free: a volatile read and a few bit tests for a token that was never revoked
+    public boolean isRevoked(VerifiedClaims claims) {
+        if (claims.tokenId() != null && bloomFilter.mightContain(claims.tokenId())
+                && revokedTokens.containsKey(claims.tokenId())) {
+            return true;
+        }
+        if (claims.userId() == null || (revokedUsers.isEmpty() && currentVersions.isEmpty())) {
+            return false;
+        }
+        Revocation revocation = revokedUsers.get(claims.userId());
+        if (revocation != null && claims.issuedAt() != null && claims.issuedAt().isBefore(revocation.cutoff())) {
+            return true;
+        }
+        // tokens issued before status versions were embedded carry none, they predate the change too
+        StatusVersion current = currentVersions.get(claims.userId());
+        return current != null && (claims.statusVersion() == null || claims.statusVersion() < current.version());
+    }
+
+    public void revokeToken(VerifiedClaims claims) {
+        if (claims.tokenId() == null) {
+            return;
+        }
+        TokenRevocation revocation = new TokenRevocation(null, claims.tokenId(), null, Instant.now(), claims.expiration(), null);
+        tokenRevocationRepository.save(revocation);
+        apply(revocation);
+    }
+
+    // every token the users hold now stops working, tokens from a later signin are unaffected. iat only has whole
+    // seconds, so the cutoff is the start of the current second and tokens issued within it stay valid: one issued
+    // right after the revocation keeps working, one issued just before it is turned away by the lock, disable or
+    // status version change that goes with every revocation
+    public void revokeUsers(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        Instant expiresAt = now.plusMillis(jwtExpirationMs);
+        List<TokenRevocation> revocations = userIds.stream()
+                .map(userId -> new TokenRevocation(null, null, userId, now, expiresAt, null))
+                .toList();
+        tokenRevocationRepository.saveAll(revocations);
+        revocations.forEach(this::apply);
+    }
+
+    // after a password or email change: the user's tokens carrying an older status version stop working on every
+    // instance, not just the one whose UserStatusRegistry saw the change; a signin after it is unaffected
+    public void revokeVersionsBefore(Long userId, Long statusVersion) {
+        Instant now = Instant.now();
+        TokenRevocation revocation = new TokenRevocation(null, null, userId, now, now.plusMillis(jwtExpirationMs), statusVersion);
+        tokenRevocationRepository.save(revocation);
+        apply(revocation);
+    }
+
+    @Scheduled(fixedDelayString = "${app.revocationSyncMs}", initialDelayString = "${app.revocationSyncMs}")
+    public void sync() {
+        Instant now = Instant.now();
+        for (TokenRevocation revocation : tokenRevocationRepository.findActiveSince(lastSync.minus(SYNC_OVERLAP), now)) {
+            apply(revocation);
+        }
+        lastSync = now;
+
+        boolean removed = revokedTokens.values().removeIf(expiresAt -> expiresAt.isBefore(now));
+        revokedUsers.values().removeIf(revocation -> revocation.expiresAt().isBefore(now));
+        currentVersions.values().removeIf(version -> version.expiresAt().isBefore(now));
+        if (removed) {
+            rebuildBloomFilter();
+        }
+        transactionTemplate.executeWithoutResult(status -> tokenRevocationRepository.deleteExpired(now));
+    }
+
+    // a user entry that is new or moved forward also drops the user from the local UserDetailsCache, which still
+    // holds the old password and status when the change was made on another instance
+    private void apply(TokenRevocation revocation) {
+        if (revocation.getTokenId() != null) {
+            addToken(revocation.getTokenId(), revocation.getExpiresAt());
+        } else if (revocation.getUserId() != null && revocation.getStatusVersion() != null) {
+            StatusVersion version = new StatusVersion(revocation.getStatusVersion(), revocation.getExpiresAt());
+            if (currentVersions.merge(revocation.getUserId(), version,
+                    (a, b) -> b.version() > a.version() ? b : a) == version) {
+                userDetailsCache.removeUserById(revocation.getUserId());
+            }
+        } else if (revocation.getUserId() != null) {
+            // rows written before cutoffs were truncated still carry milliseconds
+            Revocation cutoff = new Revocation(revocation.getRevokedAt().truncatedTo(ChronoUnit.SECONDS),
+                    revocation.getExpiresAt());
+            if (revokedUsers.merge(revocation.getUserId(), cutoff,
+                    (a, b) -> b.cutoff().isAfter(a.cutoff()) ? b : a) == cutoff) {
+                userDetailsCache.removeUserById(revocation.getUserId());
+            }
+        }
+    }
+
+    // synchronized with the rebuild only, so a token added while the filter is being replaced is not lost
+    private synchronized void addToken(String tokenId, Instant expiresAt) {
+        revokedTokens.put(tokenId, expiresAt);
+        bloomFilter.add(tokenId);
+    }
+
+    // Bloom filters cannot forget, expired tokens are shed by starting over from the exact map
+    private synchronized void rebuildBloomFilter() {
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedTokens, revokedTokens.size() * 2L), 0.01);
+        revokedTokens.keySet().forEach(rebuilt::add);
+        bloomFilter = rebuilt;
+    }
+
+    private record Revocation(Instant cutoff, Instant expiresAt) {
+    }
+
+    private record StatusVersion(long version, Instant expiresAt) {
+    }
+}
@@ -0,0 +1,110 @@
+package spring.security.temp.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import spring.security.temp.models.Role;
+import spring.security.temp.models.User;
+import spring.security.temp.models.UserAccountChangedEvent;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+
+// bounded, expiring cache in front of the email lookup, hit/miss/eviction stats are published as cache.* metrics.
+// Entries are immutable snapshots and every read gets its own User, so callers that update the principal (the
+// lockout counters) never change what the next request sees
+@Component
+public class UserDetailsCache implements UserCache {
+    private final Cache<String, CachedUser> cache;
+
+    public UserDetailsCache(@Value("${app.userCacheMaxSize}") long maxSize,
+                            @Value("${app.userCacheTtlMs}") long ttlMs,
+                            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userDetails");
+    }
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        CachedUser cached = cache.getIfPresent(key(username));
+        return cached == null ? null : cached.toUser();
+    }
+
+    // the read happens inside the cache's per-key load: an eviction arriving while it is in flight waits for it and
+    // then removes what it loaded, so a lock or disable is never overwritten by the row read just before it
+    public User get(String username, Function<String, User> loader) {
+        return cache.get(key(username), ignored -> CachedUser.of(loader.apply(username))).toUser();
+    }
+
+    // only users are cached, anything else is loaded again next time
+    @Override
+    public void putUserInCache(UserDetails user) {
+        if (user instanceof User loaded) {
+            cache.put(key(loaded.getUsername()), CachedUser.of(loaded));
+        }
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        cache.invalidate(key(username));
+    }
+
+    // revocations synced from other instances only carry the user id; rare enough for a scan
+    public void removeUserById(Long userId) {
+        cache.asMap().values().removeIf(cached -> userId.equals(cached.id()));
+    }
+
+    // runs on the publishing thread, so a lock or disable is visible before the update request returns
+    @EventListener
+    public void onUserAccountChanged(UserAccountChangedEvent event) {
+        removeUserFromCache(event.email());
+    }
+
+    // emails are looked up case-insensitively, so every casing has to hit (and evict) the same entry
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    private record CachedUser(Long id, String email, String password, String firstName, String lastName,
+                              Boolean isDeleted, Boolean locked, Boolean enabled, Integer failedSigninAttempts,
+                              Instant lockedUntil, Long statusVersion, Set<Role> roles) {
+
+        static CachedUser of(User user) {
+            return new CachedUser(user.getId(), user.getEmail(), user.getPassword(), user.getFirstName(),
+                    user.getLastName(), user.getIsDeleted(), user.getLocked(), user.getEnabled(),
+                    user.getFailedSigninAttempts(), user.getLockedUntil(), user.getStatusVersion(),
+                    user.getRoles() == null ? Set.of() : Set.copyOf(user.getRoles()));
+        }
+
+        User toUser() {
+            return User.builder()
+                    .id(id)
+                    .email(email)
+                    .password(password)
+                    .firstName(firstName)
+                    .lastName(lastName)
+                    .isDeleted(isDeleted)
+                    .locked(locked)
+                    .enabled(enabled)
+                    .failedSigninAttempts(failedSigninAttempts)
+                    .lockedUntil(lockedUntil)
+                    .statusVersion(statusVersion)
+                    .roles(new HashSet<>(roles))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package spring.security.temp.security;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import spring.security.temp.models.UserAccountChangedEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// last known account status version per user id, lets the filter trust token claims without a DB lookup.
+// Only sees changes made on this instance: password and email changes elsewhere reach it through
+// TokenRevocationList, which rejects the older tokens before this is consulted
+@Component
+public class UserStatusRegistry {
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+
+    public void record(Long userId, Long statusVersion) {
+        versions.put(userId, statusVersion == null ? 0L : statusVersion);
+    }
+
+    @EventListener
+    public void onUserAccountChanged(UserAccountChangedEvent event) {
+        record(event.userId(), event.statusVersion());
+    }
+
+    // unknown users are never current, so the first request after a restart goes to the DB
+    public boolean isCurrent(Long userId, Long statusVersion) {
+        Long current = versions.get(userId);
+        return current != null && current.equals(statusVersion);
+    }
+}
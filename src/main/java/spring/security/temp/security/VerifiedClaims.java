@@ -0,0 +1,25 @@
+package spring.security.temp.security;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.time.Instant;
+import java.util.List;
+
+// result of a single signature check + parse, pass this around instead of the raw token
+// userId, statusVersion and tokenId (the jti) are null for tokens issued before they were embedded
+public record VerifiedClaims(String subject,
+                             Instant expiration,
+                             List<GrantedAuthority> authorities,
+                             Long userId,
+                             Long statusVersion,
+                             String tokenId,
+                             Instant issuedAt) {
+
+    public VerifiedClaims {
+        authorities = List.copyOf(authorities);
+    }
+
+    public boolean isExpired() {
+        return expiration.isBefore(Instant.now());
+    }
+}
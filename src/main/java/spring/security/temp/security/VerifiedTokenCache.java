@@ -0,0 +1,71 @@
+package spring.security.temp.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+
+// already-verified claims keyed by the SHA-256 of the token, each entry expires together with its token
+@Component
+public class VerifiedTokenCache {
+    private final Cache<String, VerifiedClaims> cache;
+
+    public VerifiedTokenCache(@Value("${app.jwtCacheMaxSize}") long maxSize, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "verifiedTokens");
+    }
+
+    public VerifiedClaims get(String token) {
+        VerifiedClaims claims = cache.getIfPresent(digest(token));
+        return claims == null || claims.isExpired() ? null : claims;
+    }
+
+    public void put(String token, VerifiedClaims claims) {
+        cache.put(digest(token), claims);
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    // the raw token is never kept in memory, only its digest
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class TokenExpiry implements Expiry<String, VerifiedClaims> {
+        @Override
+        public long expireAfterCreate(String key, VerifiedClaims claims, long currentTime) {
+            long remainingMs = claims.expiration().toEpochMilli() - Instant.now().toEpochMilli();
+            return Math.max(0, remainingMs) * 1_000_000;
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, VerifiedClaims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, VerifiedClaims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
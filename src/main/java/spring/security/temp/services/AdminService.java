@@ -4,22 +4,48 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import spring.security.temp.exceptions.BadRequestException;
 import spring.security.temp.exceptions.ResourceNotFoundException;
+import spring.security.temp.models.BulkStatusRequest;
+import spring.security.temp.models.BulkStatusResponse;
+import spring.security.temp.models.CountMode;
+import spring.security.temp.models.CursorPage;
 import spring.security.temp.models.ResponseDto;
 import spring.security.temp.models.User;
+import spring.security.temp.models.UserAccountChangedEvent;
 import spring.security.temp.models.UserMapper;
 import spring.security.temp.models.UserResponseDto;
+import spring.security.temp.models.UserStatusChange;
+import spring.security.temp.models.UserSummaryDto;
 import spring.security.temp.repository.UserRepository;
+import spring.security.temp.security.TokenRevocationList;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 @Service
 public class AdminService{
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final TokenRevocationList tokenRevocationList;
+
+    @Value("${app.bulkUpdateBatchSize}")
+    private int bulkUpdateBatchSize;
 
-    public AdminService(UserRepository userRepository) {
+    public AdminService(UserRepository userRepository, ApplicationEventPublisher eventPublisher, TransactionTemplate transactionTemplate, TokenRevocationList tokenRevocationList) {
         this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.tokenRevocationList = tokenRevocationList;
     }
 
     public Page<User> getAllUsers(int pageNo, int pageSize, String sortBy, boolean ascending) {
@@ -28,6 +54,28 @@ public class AdminService{
         return userRepository.findAll(pageable);
     }
 
+    // keyset pagination on the user id: after is the last id of the previous page (next in the response),
+    // so every page costs the same however deep it is
+    public CursorPage<UserSummaryDto> listUsers(Long after, int pageSize, boolean ascending, CountMode count) {
+        int limit = Math.clamp(pageSize, 1, MAX_PAGE_SIZE);
+        List<UserSummaryDto> users = UserMapper.toSummaries(ascending
+                ? userRepository.findSummaryRowsAfter(after == null ? 0L : after, limit)
+                : userRepository.findSummaryRowsBefore(after == null ? Long.MAX_VALUE : after, limit));
+        Long next = users.size() < limit ? null : users.getLast().id();
+        return new CursorPage<>(users, next, total(count));
+    }
+
+    private Long total(CountMode count) {
+        return switch (count) {
+            case NONE -> null;
+            case EXACT -> userRepository.count();
+            case ESTIMATE -> {
+                long estimate = userRepository.estimateCount();
+                yield estimate < 0 ? userRepository.count() : estimate;
+            }
+        };
+    }
+
     public ResponseDto<UserResponseDto> getUser(Long id) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
@@ -43,13 +91,88 @@ public class AdminService{
     public ResponseDto<String> partialUpdateUser(Long id, Boolean locked, Boolean enabled) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-        user.setLocked(locked);
-        user.setEnabled(enabled);
+        // absent params leave the flag as it is
+        if (locked != null) {
+            user.setLocked(locked);
+        }
+        if (enabled != null) {
+            user.setEnabled(enabled);
+        }
+        user.bumpStatusVersion();
         userRepository.save(user);
+        eventPublisher.publishEvent(UserAccountChangedEvent.of(user));
+        if (revokesAccess(locked, enabled)) {
+            tokenRevocationList.revokeUsers(List.of(id));
+        }
         return ResponseDto.<String>builder()
                 .message("User updated successfully")
                 .build();
     }
 
-}
+    // set-based status change for many users, each batch is one UPDATE in its own short transaction so a large
+    // request never holds row locks on everyone at once; caches are told about each batch once it has committed
+    public BulkStatusResponse bulkUpdateStatus(BulkStatusRequest request) {
+        if (request.locked() == null && request.enabled() == null) {
+            throw new BadRequestException("Nothing to update, set locked and/or enabled");
+        }
+        if ((request.ids() == null) == (request.filter() == null)) {
+            throw new BadRequestException("Provide either ids or filter");
+        }
+        List<BulkStatusResponse.Batch> batches = new ArrayList<>();
+        long matched = 0;
+        long updated = 0;
+        long notFound = 0;
+        if (request.ids() != null) {
+            List<Long> ids = request.ids().stream().distinct().sorted().toList();
+            for (int from = 0; from < ids.size(); from += bulkUpdateBatchSize) {
+                List<Long> batch = ids.subList(from, Math.min(from + bulkUpdateBatchSize, ids.size()));
+                batches.add(updateBatch(batches.size() + 1, batch, request));
+            }
+        } else {
+            BulkStatusRequest.Filter filter = request.filter();
+            long afterId = 0;
+            while (true) {
+                List<Long> batch = userRepository.findIdsMatching(afterId, filter.locked(), filter.enabled(),
+                        filter.deleted(), Limit.of(bulkUpdateBatchSize));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                batches.add(updateBatch(batches.size() + 1, batch, request));
+                if (batch.size() < bulkUpdateBatchSize) {
+                    break;
+                }
+                afterId = batch.getLast();
+            }
+        }
+        for (BulkStatusResponse.Batch batch : batches) {
+            matched += batch.matched();
+            updated += batch.updated();
+            notFound += batch.notFound();
+        }
+        return new BulkStatusResponse(matched, updated, notFound, batches);
+    }
+
+    // the UPDATE skips users already in the requested state, so the users that exist are counted in the same
+    // transaction; ids with no user are reported as not found
+    private BulkStatusResponse.Batch updateBatch(int number, List<Long> ids, BulkStatusRequest request) {
+        StatusUpdate update = transactionTemplate.execute(status -> new StatusUpdate(userRepository.countByIdIn(ids),
+                userRepository.updateStatus(ids, request.locked(), request.enabled())));
+        List<UserStatusChange> changes = update.changes();
+        for (UserStatusChange change : changes) {
+            eventPublisher.publishEvent(new UserAccountChangedEvent(change.getId(), change.getEmail(), change.getStatusVersion()));
+        }
+        if (revokesAccess(request.locked(), request.enabled())) {
+            tokenRevocationList.revokeUsers(changes.stream().map(UserStatusChange::getId).toList());
+        }
+        int matched = (int) update.matched();
+        return new BulkStatusResponse.Batch(number, matched, changes.size(), ids.size() - matched);
+    }
 
+    // locking or disabling ends the sessions the users already have
+    private static boolean revokesAccess(Boolean locked, Boolean enabled) {
+        return Boolean.TRUE.equals(locked) || Boolean.FALSE.equals(enabled);
+    }
+
+    private record StatusUpdate(long matched, List<UserStatusChange> changes) {
+    }
+}
@@ -1,29 +1,44 @@
 package spring.security.temp.services;
 
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.swagger.v3.oas.annotations.Operation;
 import jakarta.transaction.Transactional;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.security.authentication.LockedException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import spring.security.temp.email.EmailSender;
+import spring.security.temp.email.EmailTemplate;
+import spring.security.temp.exceptions.InvalidTokenException;
 import spring.security.temp.exceptions.ResourceAlreadyExistsException;
 import spring.security.temp.exceptions.ResourceNotFoundException;
+import spring.security.temp.exceptions.ServiceUnavailableException;
+import spring.security.temp.exceptions.TooManyRequestsException;
 import spring.security.temp.models.*;
 import spring.security.temp.models.User;
 import spring.security.temp.repository.UserRepository;
+import spring.security.temp.security.AccountLockoutService;
+import spring.security.temp.security.AuthRateLimits;
 import spring.security.temp.security.JwtService;
+import spring.security.temp.security.TokenRevocationList;
+import spring.security.temp.security.VerifiedClaims;
 import spring.security.temp.token.ConfirmationToken;
 import spring.security.temp.token.ConfirmationTokenRepository;
 import spring.security.temp.token.ConfirmationTokenService;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
 
-import static spring.security.temp.email.EmailBuilder.buildVerificationEmail;
-
 
 @Service
 public class AuthenticationService {
@@ -35,8 +50,15 @@ public class AuthenticationService {
     private final UserService userService;
     private final EmailSender emailSender;
     private final ConfirmationTokenRepository confirmationTokenRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AuthRateLimits authRateLimits;
+    private final AccountLockoutService accountLockoutService;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenRevocationList tokenRevocationList;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
 
-    public AuthenticationService(UserRepository userRepository, EmailSender emailSender, JwtService service, PasswordEncoder passwordEncoder, AuthenticationManager authenticationManager, ConfirmationTokenService confirmationTokenService, UserService userService, ConfirmationTokenRepository confirmationTokenRepository) {
+    public AuthenticationService(UserRepository userRepository, EmailSender emailSender, JwtService service, PasswordEncoder passwordEncoder, AuthenticationManager authenticationManager, ConfirmationTokenService confirmationTokenService, UserService userService, ConfirmationTokenRepository confirmationTokenRepository, ApplicationEventPublisher eventPublisher, AuthRateLimits authRateLimits, AccountLockoutService accountLockoutService, RefreshTokenService refreshTokenService, TokenRevocationList tokenRevocationList, TransactionTemplate transactionTemplate, MeterRegistry meterRegistry) {
         this.userRepository = userRepository;
         this.service = service;
         this.passwordEncoder = passwordEncoder;
@@ -45,10 +67,29 @@ public class AuthenticationService {
         this.userService = userService;
         this.emailSender = emailSender;
         this.confirmationTokenRepository = confirmationTokenRepository;
+        this.eventPublisher = eventPublisher;
+        this.authRateLimits = authRateLimits;
+        this.accountLockoutService = accountLockoutService;
+        this.refreshTokenService = refreshTokenService;
+        this.tokenRevocationList = tokenRevocationList;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
     }
 
+    // the password is hashed before the transaction starts so BCrypt doesn't hold a pooled connection,
+    // user, confirmation token and the outbox email then commit together
     @Operation(summary = "Sign Up to use App")
     public RegistrationResponse signup(RegistrationRequest registrationRequest) {
+        String encodedPassword = passwordEncoder.encode(registrationRequest.getPassword());
+        String token = Objects.requireNonNull(transactionTemplate.execute(status -> register(registrationRequest, encodedPassword)));
+
+        return RegistrationResponse.builder()
+                .message(String.format("User with name %s %s created successfully", registrationRequest.getFirstName(), registrationRequest.getLastName()))
+                .token(token)
+                .build();
+    }
+
+    private String register(RegistrationRequest registrationRequest, String encodedPassword) {
         if (userRepository.findByEmail(registrationRequest.getEmail()).isPresent()) {
             throw new ResourceAlreadyExistsException("User with email already present");
         }
@@ -56,7 +97,7 @@ public class AuthenticationService {
                 .firstName(registrationRequest.getFirstName())
                 .lastName(registrationRequest.getLastName())
                 .email(registrationRequest.getEmail())
-                .password(passwordEncoder.encode(registrationRequest.getPassword()))
+                .password(encodedPassword)
                 .enabled(true)
                 .build();
         userRepository.save(user);
@@ -70,14 +111,10 @@ public class AuthenticationService {
         );
         confirmationTokenService.saveConfirmationToken(confirmationToken);
 
-        String link = "http://localhost:8080/api/v1/registration/confirm?token=" + token;
-        emailSender.send(registrationRequest.getEmail(), buildVerificationEmail(registrationRequest.getFirstName(), link));
-
-        //send email
-        return RegistrationResponse.builder()
-                .message(String.format("User with name %s %s created successfully", registrationRequest.getFirstName(), registrationRequest.getLastName()))
-                .token(token)
-                .build();
+        String link = confirmationTokenService.confirmationLink(token);
+        emailSender.send(registrationRequest.getEmail(), EmailTemplate.VERIFICATION,
+                Map.of("name", registrationRequest.getFirstName(), "link", link));
+        return token;
     }
 
     @Transactional
@@ -114,7 +151,11 @@ public class AuthenticationService {
 
         User user = token.getUser();
         user.setPassword(passwordEncoder.encode(passwordResetRequest.getNewPassword()));
+        user.bumpStatusVersion();
         userRepository.save(user);
+        eventPublisher.publishEvent(UserAccountChangedEvent.of(user));
+        tokenRevocationList.revokeVersionsBefore(user.getId(), user.getStatusVersion());
+        refreshTokenService.revokeAll(user.getId());
 
         return GeneralResponse.builder()
                 .message("Password Reset Successfully")
@@ -123,29 +164,79 @@ public class AuthenticationService {
 
     @Operation(summary = "Sign In to access personal data")
     public AuthenticationResponse signin(AuthenticationRequest authenticationRequest) {
-        System.out.println("Starting Authentication");
-        authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                        authenticationRequest.getUsername()
-                        , authenticationRequest.getPassword()
-                )
-        );
-        System.out.println("User Authenticated: " + authenticationRequest.getUsername());
+        try {
+            AuthenticationResponse response = authenticate(authenticationRequest);
+            meterRegistry.counter("auth.signin", "outcome", "success").increment();
+            return response;
+        } catch (RuntimeException e) {
+            meterRegistry.counter("auth.signin", "outcome", signinFailure(e)).increment();
+            throw e;
+        }
+    }
 
-        var user = userRepository.findByEmail(authenticationRequest.getUsername())
-                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
-        System.out.println("User Found: " + authenticationRequest.getUsername());
+    // unknown emails count as bad_credentials, same as they are answered
+    private static String signinFailure(RuntimeException e) {
+        return switch (e) {
+            case BadCredentialsException ignored -> "bad_credentials";
+            case LockedException ignored -> "locked";
+            case DisabledException ignored -> "disabled";
+            case TooManyRequestsException ignored -> "rate_limited";
+            case ServiceUnavailableException ignored -> "overloaded";
+            default -> "error";
+        };
+    }
+
+    private AuthenticationResponse authenticate(AuthenticationRequest authenticationRequest) {
+        // before the lookup and the password check, so a throttled guess costs neither
+        authRateLimits.checkSigninAccount(authenticationRequest.getUsername());
+        Authentication authentication;
+        try {
+            authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(
+                            authenticationRequest.getUsername()
+                            , authenticationRequest.getPassword()
+                    )
+            );
+        } catch (BadCredentialsException e) {
+            accountLockoutService.recordFailure(authenticationRequest.getUsername());
+            throw e;
+        }
+        // the provider already loaded the user (or rehashed its password), so no second lookup for the token
+        var user = (User) authentication.getPrincipal();
+        accountLockoutService.recordSuccess(user);
 
         var token = service.generateToken(user);
 
         return AuthenticationResponse.builder()
                 .token(token)
+                .refreshToken(refreshTokenService.issue(user))
                 .message("User has signed in successfully")
                 .build();
     }
 
+    // revokes the presented access token and, when given, the refresh token's family, so neither can be used again
+    public GeneralResponse logout(String authorization, RefreshTokenRequest refreshTokenRequest) {
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            throw new InvalidTokenException("Access token is required");
+        }
+        VerifiedClaims claims;
+        try {
+            claims = service.verify(authorization.substring(7));
+        } catch (JwtException | IllegalArgumentException e) {
+            throw new InvalidTokenException("Invalid or expired access token");
+        }
+        tokenRevocationList.revokeToken(claims);
+        if (refreshTokenRequest != null && refreshTokenRequest.refreshToken() != null) {
+            refreshTokenService.revokeFamily(refreshTokenRequest.refreshToken());
+        }
+        return GeneralResponse.builder()
+                .message("Logged out successfully")
+                .build();
+    }
+
     @Transactional
     public GeneralResponse resendVerification( EmailRequest emailRequest){
+        authRateLimits.checkResendAccount(emailRequest.email());
         User user = userRepository.findByEmail(emailRequest.email()).orElseThrow(() -> new UsernameNotFoundException("User not Found"));
         // create a token and save it using method written
 
@@ -155,14 +246,12 @@ public class AuthenticationService {
                 LocalDateTime.now().plusMinutes(15),
                 user
         );
-        System.out.println(token);
 
         confirmationTokenService.saveConfirmationToken(confirmationToken);
-        System.out.println("token is saved");
 
-        String link = "http://localhost:8080/api/v1/registration/confirm?token=" + token;
-        emailSender.send(emailRequest.email(), buildVerificationEmail(user.getFirstName(), link));
-        System.out.println("email has been sent");
+        String link = confirmationTokenService.confirmationLink(token);
+        emailSender.send(emailRequest.email(), EmailTemplate.VERIFICATION,
+                Map.of("name", user.getFirstName(), "link", link));
 
         //send email
         return GeneralResponse.builder()
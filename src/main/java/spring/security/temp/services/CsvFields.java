@@ -0,0 +1,31 @@
+package spring.security.temp.services;
+
+import java.io.IOException;
+import java.io.Writer;
+
+// RFC 4180 quoting for the admin CSV files, plus a leading quote on values a spreadsheet would otherwise run as a formula
+public final class CsvFields {
+    private static final String FORMULA_PREFIXES = "=+-@\t\r";
+
+    private CsvFields() {
+    }
+
+    public static void write(Writer writer, String value) throws IOException {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        boolean formula = FORMULA_PREFIXES.indexOf(value.charAt(0)) >= 0;
+        boolean quote = formula || value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        if (formula) {
+            writer.write('\'');
+        }
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -1,42 +1,139 @@
 package spring.security.temp.services;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import spring.security.temp.exceptions.InvalidTokenException;
 import spring.security.temp.models.RefreshToken;
 import spring.security.temp.models.RefreshTokenResponse;
+import spring.security.temp.models.UsedRefreshToken;
+import spring.security.temp.models.User;
 import spring.security.temp.repository.RefreshTokenRepository;
 import spring.security.temp.repository.UserRepository;
+import spring.security.temp.security.JwtService;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
 import java.util.UUID;
 
+// one-time-use refresh tokens: each exchange consumes the token and issues its successor in the same family,
+// presenting a consumed token again revokes the whole family (the token was copied, by the client or an attacker)
 @Service
 public class RefreshTokenService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RefreshTokenService.class);
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
     @Value("${jwt.refreshExpirationMs}")
     private Long refreshTokenDurationMs;
 
     private final RefreshTokenRepository refreshTokenRepository;
     private final UserRepository userRepository;
+    private final UserDetailsService userDetailsService;
+    private final JwtService jwtService;
+    private final TransactionTemplate transactionTemplate;
 
-    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository, UserRepository userRepository) {
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository, UserRepository userRepository,
+                               UserDetailsService userDetailsService, JwtService jwtService,
+                               TransactionTemplate transactionTemplate) {
         this.refreshTokenRepository = refreshTokenRepository;
         this.userRepository = userRepository;
+        this.userDetailsService = userDetailsService;
+        this.jwtService = jwtService;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    // starts a new family, called on signin
+    public String issue(User user) {
+        String token = newToken();
+        refreshTokenRepository.save(refreshToken(user, token, UUID.randomUUID(), Instant.now()));
+        return token;
     }
 
-    public RefreshTokenResponse refreshToken(Long userId) {
-        var token = new RefreshToken();
-        token.setUser(userRepository.findById(userId).get());
-        token.setExpiryDate(Instant.now().plusMillis(refreshTokenDurationMs));
-        token.setToken(UUID.randomUUID().toString());
-        refreshTokenRepository.save(token);
+    // swaps a live refresh token for a new access token and refresh token, no password check involved
+    public RefreshTokenResponse refreshToken(String token) {
+        if (token == null || token.isBlank()) {
+            throw new InvalidTokenException("Refresh token is required");
+        }
+        byte[] tokenHash = hash(token);
+        String next = newToken();
+        Instant now = Instant.now();
+        // the successor is saved in the transaction that consumed the token, either both happen or neither does
+        List<UsedRefreshToken> used = transactionTemplate.execute(status -> {
+            List<UsedRefreshToken> rows = refreshTokenRepository.markUsed(tokenHash, now);
+            rows.forEach(row -> refreshTokenRepository.save(
+                    refreshToken(userRepository.getReferenceById(row.getUserId()), next, row.getFamilyId(), now)));
+            return rows;
+        });
+        if (used == null || used.isEmpty()) {
+            Integer revoked = transactionTemplate.execute(status -> refreshTokenRepository.revokeFamilyOfUsed(tokenHash, now));
+            if (revoked != null && revoked > 0) {
+                LOGGER.warn("refresh token replayed, revoked {} tokens of its family", revoked);
+            }
+            throw new InvalidTokenException("Invalid or expired refresh token");
+        }
 
+        User user = activeUser(used.getFirst().getEmail());
         return RefreshTokenResponse.builder()
                 .message("Token refreshed successfully")
-                .token(token)
+                .token(jwtService.generateToken(user))
+                .refreshToken(next)
                 .build();
     }
 
-    public boolean isTokenExpired(RefreshToken token) {
-        return token.getExpiryDate().isBefore(Instant.now());
+    // ends the session the token belongs to (logout), unknown tokens are ignored
+    public void revokeFamily(String token) {
+        byte[] tokenHash = hash(token);
+        transactionTemplate.executeWithoutResult(status -> refreshTokenRepository.revokeFamily(tokenHash, Instant.now()));
+    }
+
+    // existing sessions end, e.g. after a password reset
+    public void revokeAll(Long userId) {
+        transactionTemplate.executeWithoutResult(status -> refreshTokenRepository.revokeAllForUser(userId, Instant.now()));
+    }
+
+    private User activeUser(String email) {
+        try {
+            if (userDetailsService.loadUserByUsername(email) instanceof User user
+                    && user.isEnabled() && user.isAccountNonLocked() && !Boolean.TRUE.equals(user.getIsDeleted())) {
+                return user;
+            }
+        } catch (UsernameNotFoundException e) {
+            // deleted in the meantime
+        }
+        throw new InvalidTokenException("Account is not active");
+    }
+
+    private RefreshToken refreshToken(User user, String token, UUID familyId, Instant now) {
+        var refreshToken = new RefreshToken();
+        refreshToken.setUser(user);
+        refreshToken.setTokenHash(hash(token));
+        refreshToken.setFamilyId(familyId);
+        refreshToken.setExpiryDate(now.plusMillis(refreshTokenDurationMs));
+        return refreshToken;
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        return ENCODER.encodeToString(bytes);
+    }
+
+    // a digest is enough, the token is 256 random bits so there is nothing to brute-force and no salt needed
+    private static byte[] hash(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 }
@@ -0,0 +1,104 @@
+package spring.security.temp.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import spring.security.temp.models.DataFormat;
+import spring.security.temp.models.UserMapper;
+import spring.security.temp.models.UserSummaryDto;
+import spring.security.temp.models.UserSummaryRow;
+import spring.security.temp.repository.UserRepository;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.SerializationFeature;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+// streams every matching user straight from a database cursor to the response, one user in memory at a time
+@Service
+public class UserExportService {
+    private final static Logger LOGGER = LoggerFactory.getLogger(UserExportService.class);
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    // one flush per buffer rather than per user, the newline between users is written by hand
+    private final ObjectWriter jsonWriter;
+
+    public UserExportService(UserRepository userRepository, PlatformTransactionManager transactionManager, JsonMapper jsonMapper) {
+        this.userRepository = userRepository;
+        this.jsonWriter = jsonMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("");
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public void export(DataFormat format, Boolean locked, Boolean enabled, Boolean deleted, OutputStream out) {
+        long[] written = new long[1];
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+                try (Stream<UserSummaryRow> rows = userRepository.streamSummaryRows(locked, enabled, deleted)) {
+                    if (format == DataFormat.CSV) {
+                        writeCsv(rows, writer, written);
+                    } else {
+                        writeNdjson(rows, writer, written);
+                    }
+                    writer.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException | JacksonException e) {
+            // the client went away, the cursor and transaction are already closed so there is nothing left to clean up
+            LOGGER.debug("user export stopped after {} users: {}", written[0], e.getMessage());
+        }
+    }
+
+    private void writeNdjson(Stream<UserSummaryRow> rows, Writer writer, long[] written) {
+        JsonGenerator generator = jsonWriter.createGenerator(writer);
+        UserMapper.forEachSummary(rows::iterator, user -> {
+            jsonWriter.writeValue(generator, user);
+            generator.writeRaw('\n');
+            written[0]++;
+        });
+        generator.flush();
+    }
+
+    private void writeCsv(Stream<UserSummaryRow> rows, Writer writer, long[] written) throws IOException {
+        writer.write("id,email,fullName,status,roles\r\n");
+        UserMapper.forEachSummary(rows::iterator, user -> {
+            try {
+                writeCsvRow(writer, user);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            written[0]++;
+        });
+    }
+
+    private void writeCsvRow(Writer writer, UserSummaryDto user) throws IOException {
+        writer.write(String.valueOf(user.id()));
+        writer.write(',');
+        CsvFields.write(writer, user.email());
+        writer.write(',');
+        CsvFields.write(writer, user.fullName());
+        writer.write(',');
+        writer.write(user.status());
+        writer.write(',');
+        CsvFields.write(writer, String.join(";", user.roles()));
+        writer.write("\r\n");
+    }
+}
@@ -1,6 +1,7 @@
 package spring.security.temp.services;
 
 import lombok.AllArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -9,12 +10,19 @@ import org.springframework.stereotype.Service;
 import spring.security.temp.exceptions.ResourceNotFoundException;
 import spring.security.temp.models.*;
 import spring.security.temp.repository.UserRepository;
+import spring.security.temp.security.TokenRevocationList;
+
+import java.util.List;
+import java.util.Objects;
 
 @Service
 @AllArgsConstructor
 public class UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TokenRevocationList tokenRevocationList;
+    private final RefreshTokenService refreshTokenService;
 
     public void enableUser(String email){
 
@@ -48,10 +56,20 @@ public class UserService {
     public ResponseDto<UserResponseDto> updateUser(Long id, UserRequestDto userRequestDto) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        String previousEmail = user.getEmail();
+        // tokens carry the email as subject, so an email change has to invalidate them
+        boolean emailChanged = !Objects.equals(user.getEmail(), userRequestDto.getEmail());
+        if (emailChanged) {
+            user.bumpStatusVersion();
+        }
         user.setEmail(userRequestDto.getEmail());
         user.setFirstName(userRequestDto.getFirstName());
         user.setLastName(userRequestDto.getLastName());
         userRepository.save(user);
+        eventPublisher.publishEvent(UserAccountChangedEvent.of(user, previousEmail));
+        if (emailChanged) {
+            tokenRevocationList.revokeVersionsBefore(user.getId(), user.getStatusVersion());
+        }
         UserResponseDto userDto = UserMapper.toDTo(user);
         return ResponseDto.<UserResponseDto>builder()
                 .message("User deleted successfully")
@@ -66,7 +84,10 @@ public class UserService {
         user.setIsDeleted(true);
         user.setEnabled(false);
         user.setLocked(true);
+        user.bumpStatusVersion();
         userRepository.save(user);
+        eventPublisher.publishEvent(UserAccountChangedEvent.of(user));
+        tokenRevocationList.revokeUsers(List.of(user.getId()));
         return ResponseDto.<String>builder()
                 .message("User deleted successfully")
                 .build();
@@ -75,11 +96,19 @@ public class UserService {
     public ResponseDto<String> updatePassword(Long id, PasswordResetRequest passwordRequest) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-        if (passwordRequest.getNewPassword().equals(passwordRequest.getConfirmPassword())) {
+        boolean changed = passwordRequest.getNewPassword().equals(passwordRequest.getConfirmPassword());
+        if (changed) {
             String password = passwordEncoder.encode(passwordRequest.getNewPassword());
             user.setPassword(password);
+            user.bumpStatusVersion();
         }
         userRepository.save(user);
+        eventPublisher.publishEvent(UserAccountChangedEvent.of(user));
+        // same as a password reset, sessions from before the change end on every instance
+        if (changed) {
+            tokenRevocationList.revokeVersionsBefore(user.getId(), user.getStatusVersion());
+            refreshTokenService.revokeAll(user.getId());
+        }
         return ResponseDto.<String>builder()
                 .message("User password updated successfully")
                 .build();
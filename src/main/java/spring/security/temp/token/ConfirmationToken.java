@@ -18,7 +18,7 @@ public class ConfirmationToken {
     @SequenceGenerator(
             name = "token_sequence",
             sequenceName = "token_sequence",
-            allocationSize = 1
+            allocationSize = 50
     )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
@@ -1,12 +1,22 @@
 package spring.security.temp.token;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ConfirmationTokenRepository extends JpaRepository<ConfirmationToken, Long> {
 
     Optional<ConfirmationToken> findByToken(String token);
+
+    // keyset page of tokens that expired or were used before the cutoff
+    @Query("select t.id from ConfirmationToken t " +
+            "where t.id > :afterId and (t.expiresAt < :cutoff or t.confirmedAt < :cutoff) " +
+            "order by t.id")
+    List<Long> findPurgeableIds(Long afterId, LocalDateTime cutoff, Limit limit);
 }
@@ -19,6 +19,10 @@ public class ConfirmationTokenService {
         return confirmationTokenRepository.findByToken(token);
     }
 
+    public String confirmationLink(String token) {
+        return "http://localhost:8080/api/v1/registration/confirm?token=" + token;
+    }
+
     public void setConfirmedAt(String token){
     }
 }
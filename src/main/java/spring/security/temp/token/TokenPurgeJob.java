@@ -0,0 +1,116 @@
+package spring.security.temp.token;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import spring.security.temp.email.OutboxEmailRepository;
+import spring.security.temp.repository.RefreshTokenRepository;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.LongFunction;
+
+// deletes expired or used confirmation/refresh tokens and sent or failed outbox emails in small keyset-paged chunks,
+// each chunk is its own short transaction and the job sleeps between chunks so it never holds locks for long
+@Component
+public class TokenPurgeJob {
+    private final static Logger LOGGER = LoggerFactory.getLogger(TokenPurgeJob.class);
+
+    private final ConfirmationTokenRepository confirmationTokenRepository;
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final OutboxEmailRepository outboxEmailRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Timer runTimer;
+
+    @Value("${app.tokenPurgeRetentionMs}")
+    private long retentionMs;
+
+    @Value("${app.outboxEmailRetentionMs}")
+    private long outboxRetentionMs;
+
+    @Value("${app.tokenPurgeBatchSize}")
+    private int batchSize;
+
+    @Value("${app.tokenPurgePauseMs}")
+    private long pauseMs;
+
+    public TokenPurgeJob(ConfirmationTokenRepository confirmationTokenRepository,
+                         RefreshTokenRepository refreshTokenRepository,
+                         OutboxEmailRepository outboxEmailRepository,
+                         TransactionTemplate transactionTemplate,
+                         MeterRegistry meterRegistry) {
+        this.confirmationTokenRepository = confirmationTokenRepository;
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.outboxEmailRepository = outboxEmailRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.runTimer = Timer.builder("tokens.purge.duration")
+                .description("Time taken by one token purge run")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.tokenPurgeIntervalMs}", initialDelayString = "${app.tokenPurgeIntervalMs}")
+    public void purge() {
+        runTimer.record(() -> {
+            LocalDateTime confirmationCutoff = LocalDateTime.now().minusNanos(retentionMs * 1_000_000);
+            Instant refreshCutoff = Instant.now().minusMillis(retentionMs);
+            LocalDateTime outboxCutoff = LocalDateTime.now().minusNanos(outboxRetentionMs * 1_000_000);
+            long confirmation = purge("confirmation", confirmationTokenRepository,
+                    afterId -> confirmationTokenRepository.findPurgeableIds(afterId, confirmationCutoff, Limit.of(batchSize)));
+            long refresh = purge("refresh", refreshTokenRepository,
+                    afterId -> refreshTokenRepository.findPurgeableIds(afterId, refreshCutoff, Limit.of(batchSize)));
+            long outbox = purge("outbox_email", outboxEmailRepository,
+                    afterId -> outboxEmailRepository.findPurgeableIds(afterId, outboxCutoff, Limit.of(batchSize)));
+            LOGGER.info("purged {} confirmation and {} refresh tokens, {} outbox emails", confirmation, refresh, outbox);
+        });
+    }
+
+    private long purge(String type, JpaRepository<?, Long> repository, LongFunction<List<Long>> nextBatch) {
+        Counter purged = meterRegistry.counter("tokens.purged", "type", type);
+        long total = 0;
+        long afterId = 0;
+        while (true) {
+            long lastId = afterId;
+            List<Long> ids = transactionTemplate.execute(status -> {
+                List<Long> batch = nextBatch.apply(lastId);
+                if (!batch.isEmpty()) {
+                    repository.deleteAllByIdInBatch(batch);
+                }
+                return batch;
+            });
+            if (ids == null || ids.isEmpty()) {
+                return total;
+            }
+            total += ids.size();
+            purged.increment(ids.size());
+            if (ids.size() < batchSize) {
+                return total;
+            }
+            afterId = ids.get(ids.size() - 1);
+            if (!pause()) {
+                return total;
+            }
+        }
+    }
+
+    // false when interrupted, e.g. on shutdown, the rest is picked up by the next run
+    private boolean pause() {
+        try {
+            Thread.sleep(pauseMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package spring.security.temp.userimport;
+
+public enum ImportOutcome {
+    CREATED,
+    // failed validation or could not be parsed
+    INVALID,
+    // the same email appeared earlier in the upload
+    DUPLICATE,
+    // an account with the email already exists
+    EXISTS,
+    FAILED
+}
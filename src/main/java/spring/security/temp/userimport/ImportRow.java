@@ -0,0 +1,9 @@
+package spring.security.temp.userimport;
+
+// one user from the upload, row counts data rows from 1; error is set when the row could not be parsed
+public record ImportRow(long row, String email, String firstName, String lastName, String password, String error) {
+
+    static ImportRow unreadable(long row, String error) {
+        return new ImportRow(row, null, null, null, null, error);
+    }
+}
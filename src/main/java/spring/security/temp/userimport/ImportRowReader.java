@@ -0,0 +1,157 @@
+package spring.security.temp.userimport;
+
+import spring.security.temp.exceptions.BadRequestException;
+import spring.security.temp.models.DataFormat;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// pulls one row at a time off the upload stream, so the import never holds more than a chunk in memory
+public abstract class ImportRowReader {
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    protected final BufferedReader in;
+    protected long row;
+
+    private ImportRowReader(InputStream in) {
+        this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    // the CSV header is read straight away so a bad upload is rejected before any response is written
+    public static ImportRowReader open(DataFormat format, InputStream in, ObjectReader jsonReader) throws IOException {
+        return format == DataFormat.CSV ? new Csv(in) : new Ndjson(in, jsonReader.forType(Ndjson.Line.class));
+    }
+
+    // null once the upload is exhausted
+    public abstract ImportRow next() throws IOException;
+
+    // CSV with a header row naming email, firstName, lastName and password in any order, RFC 4180 quoting
+    private static final class Csv extends ImportRowReader {
+        private static final List<String> COLUMNS = List.of("email", "firstname", "lastname", "password");
+
+        private final int[] index = new int[COLUMNS.size()];
+        private final int columns;
+
+        private Csv(InputStream in) throws IOException {
+            super(in);
+            List<String> header = readRecord();
+            if (header == null) {
+                throw new BadRequestException("Upload is empty");
+            }
+            columns = header.size();
+            Map<String, Integer> positions = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                positions.put(header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT), i);
+            }
+            for (int i = 0; i < COLUMNS.size(); i++) {
+                Integer position = positions.get(COLUMNS.get(i));
+                if (position == null) {
+                    throw new BadRequestException("CSV header must contain email, firstName, lastName and password");
+                }
+                index[i] = position;
+            }
+        }
+
+        @Override
+        public ImportRow next() throws IOException {
+            List<String> fields = readRecord();
+            while (fields != null && fields.size() == 1 && fields.getFirst().isBlank()) {
+                fields = readRecord();
+            }
+            if (fields == null) {
+                return null;
+            }
+            row++;
+            for (int i : index) {
+                if (i >= fields.size()) {
+                    return ImportRow.unreadable(row, "Expected " + columns + " columns, found " + fields.size());
+                }
+            }
+            return new ImportRow(row, fields.get(index[0]).trim(), fields.get(index[1]).trim(),
+                    fields.get(index[2]).trim(), fields.get(index[3]), null);
+        }
+
+        private List<String> readRecord() throws IOException {
+            int c = in.read();
+            if (c == -1) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (c != -1) {
+                if (quoted) {
+                    if (c == '"') {
+                        in.mark(1);
+                        if (in.read() == '"') {
+                            field.append('"');
+                        } else {
+                            in.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = in.read();
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    // one JSON object per line, a broken line only fails its own row
+    private static final class Ndjson extends ImportRowReader {
+        private final ObjectReader reader;
+
+        private Ndjson(InputStream in, ObjectReader reader) {
+            super(in);
+            this.reader = reader;
+        }
+
+        @Override
+        public ImportRow next() throws IOException {
+            String line = in.readLine();
+            while (line != null && line.isBlank()) {
+                line = in.readLine();
+            }
+            if (line == null) {
+                return null;
+            }
+            row++;
+            try {
+                Line parsed = reader.readValue(line);
+                return new ImportRow(row, trim(parsed.email()), trim(parsed.firstName()), trim(parsed.lastName()),
+                        parsed.password(), null);
+            } catch (JacksonException e) {
+                return ImportRow.unreadable(row, "Malformed JSON: " + e.getOriginalMessage());
+            }
+        }
+
+        private static String trim(String value) {
+            return value == null ? null : value.trim();
+        }
+
+        private record Line(String email, String firstName, String lastName, String password) {
+        }
+    }
+}
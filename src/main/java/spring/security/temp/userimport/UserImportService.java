@@ -0,0 +1,249 @@
+package spring.security.temp.userimport;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import spring.security.temp.email.EmailSender;
+import spring.security.temp.email.EmailTemplate;
+import spring.security.temp.models.DataFormat;
+import spring.security.temp.models.User;
+import spring.security.temp.repository.UserRepository;
+import spring.security.temp.security.OffloadingPasswordEncoder;
+import spring.security.temp.services.CsvFields;
+import spring.security.temp.token.ConfirmationToken;
+import spring.security.temp.token.ConfirmationTokenRepository;
+import spring.security.temp.token.ConfirmationTokenService;
+import tools.jackson.databind.ObjectReader;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+// admin bulk onboarding: the upload is read in chunks, each chunk is validated, checked against existing
+// accounts with one query, hashed in parallel and inserted (users, confirmation tokens, outbox emails) in one
+// batched transaction, then its rows are appended to the report
+@Service
+public class UserImportService {
+    private final static Logger LOGGER = LoggerFactory.getLogger(UserImportService.class);
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final UserRepository userRepository;
+    private final ConfirmationTokenRepository confirmationTokenRepository;
+    private final ConfirmationTokenService confirmationTokenService;
+    private final EmailSender emailSender;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ForkJoinPool importHashingPool;
+    private final PasswordEncoder hashingEncoder;
+    private final ObjectReader jsonReader;
+
+    @Value("${app.importChunkSize}")
+    private int chunkSize;
+
+    public UserImportService(UserRepository userRepository,
+                             ConfirmationTokenRepository confirmationTokenRepository,
+                             ConfirmationTokenService confirmationTokenService,
+                             EmailSender emailSender,
+                             TransactionTemplate transactionTemplate,
+                             Validator validator,
+                             ForkJoinPool importHashingPool,
+                             PasswordEncoder passwordEncoder,
+                             JsonMapper jsonMapper) {
+        this.userRepository = userRepository;
+        this.confirmationTokenRepository = confirmationTokenRepository;
+        this.confirmationTokenService = confirmationTokenService;
+        this.emailSender = emailSender;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.importHashingPool = importHashingPool;
+        // hash on the import pool directly, queueing thousands of hashes on the login pool would starve signins
+        this.hashingEncoder = passwordEncoder instanceof OffloadingPasswordEncoder offloading
+                ? offloading.getDelegate()
+                : passwordEncoder;
+        this.jsonReader = jsonMapper.reader();
+    }
+
+    public ImportRowReader open(DataFormat format, InputStream in) throws IOException {
+        return ImportRowReader.open(format, in, jsonReader);
+    }
+
+    // writes the CSV report (row,email,outcome,message) as chunks complete; chunks already written stay
+    // imported if the client goes away half way
+    public void importUsers(ImportRowReader reader, OutputStream out) throws IOException {
+        Writer report = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        report.write("row,email,outcome,message\r\n");
+        Map<ImportOutcome, Long> totals = new HashMap<>();
+        List<ImportRow> chunk = new ArrayList<>(chunkSize);
+        ImportRow row;
+        while ((row = reader.next()) != null) {
+            chunk.add(row);
+            if (chunk.size() == chunkSize) {
+                importChunk(chunk, report, totals);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, report, totals);
+        }
+        report.flush();
+        LOGGER.info("user import finished: {}", totals);
+    }
+
+    private void importChunk(List<ImportRow> chunk, Writer report, Map<ImportOutcome, Long> totals) throws IOException {
+        Result[] results = new Result[chunk.size()];
+        Map<String, Candidate> candidates = new HashMap<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            ImportRow row = chunk.get(i);
+            if (row.error() != null) {
+                results[i] = new Result(ImportOutcome.INVALID, row.error());
+                continue;
+            }
+            User user = toUser(row, row.password());
+            Set<ConstraintViolation<User>> violations = validator.validate(user);
+            if (!violations.isEmpty()) {
+                results[i] = new Result(ImportOutcome.INVALID, violations.iterator().next().getMessage());
+                continue;
+            }
+            // later rows for the same email are caught by the lookup below once this chunk has committed
+            String key = row.email().toLowerCase(Locale.ROOT);
+            if (candidates.containsKey(key)) {
+                results[i] = new Result(ImportOutcome.DUPLICATE, "Repeats row " + candidates.get(key).row.row());
+                continue;
+            }
+            candidates.put(key, new Candidate(i, row));
+        }
+
+        dropExisting(candidates, results);
+        hash(candidates.values());
+        try {
+            insert(candidates.values());
+        } catch (DataIntegrityViolationException e) {
+            // an email was registered between the lookup and the insert, take it out and try once more
+            dropExisting(candidates, results);
+            try {
+                insert(candidates.values());
+            } catch (DataIntegrityViolationException retryFailure) {
+                LOGGER.warn("user import chunk failed: {}", retryFailure.getMessage());
+                for (Candidate candidate : candidates.values()) {
+                    results[candidate.index] = new Result(ImportOutcome.FAILED, "Could not be saved, retry the row");
+                }
+                candidates.clear();
+            }
+        }
+        for (Candidate candidate : candidates.values()) {
+            results[candidate.index] = new Result(ImportOutcome.CREATED, null);
+        }
+
+        for (int i = 0; i < chunk.size(); i++) {
+            writeReportRow(report, chunk.get(i), results[i]);
+            totals.merge(results[i].outcome, 1L, Long::sum);
+        }
+    }
+
+    private void dropExisting(Map<String, Candidate> candidates, Result[] results) {
+        if (candidates.isEmpty()) {
+            return;
+        }
+        for (String existing : userRepository.findExistingEmails(candidates.keySet())) {
+            Candidate candidate = candidates.remove(existing);
+            if (candidate != null) {
+                results[candidate.index] = new Result(ImportOutcome.EXISTS, "User with email already present");
+            }
+        }
+    }
+
+    // BCrypt dominates the import, so it runs across the bounded pool while the chunk waits
+    private void hash(Iterable<Candidate> candidates) {
+        List<Candidate> toHash = new ArrayList<>();
+        candidates.forEach(toHash::add);
+        try {
+            importHashingPool.submit(() -> toHash.parallelStream()
+                    .forEach(candidate -> candidate.hash = hashingEncoder.encode(candidate.row.password())))
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing passwords", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    // fresh entities on every attempt, a rolled back attempt leaves ids behind on the old ones
+    private void insert(Iterable<Candidate> candidates) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<User> users = new ArrayList<>();
+            List<ConfirmationToken> tokens = new ArrayList<>();
+            LocalDateTime now = LocalDateTime.now();
+            for (Candidate candidate : candidates) {
+                User user = toUser(candidate.row, candidate.hash);
+                users.add(user);
+                tokens.add(new ConfirmationToken(UUID.randomUUID().toString(), now, now.plusMinutes(15), user));
+            }
+            userRepository.saveAll(users);
+            confirmationTokenRepository.saveAll(tokens);
+            for (ConfirmationToken token : tokens) {
+                emailSender.send(token.getUser().getEmail(), EmailTemplate.VERIFICATION,
+                        Map.of("name", token.getUser().getFirstName(),
+                                "link", confirmationTokenService.confirmationLink(token.getToken())));
+            }
+            userRepository.flush();
+        });
+    }
+
+    private static User toUser(ImportRow row, String password) {
+        return User.builder()
+                .email(row.email())
+                .firstName(row.firstName())
+                .lastName(row.lastName())
+                .password(password)
+                .enabled(true)
+                .build();
+    }
+
+    private static void writeReportRow(Writer report, ImportRow row, Result result) throws IOException {
+        report.write(Long.toString(row.row()));
+        report.write(',');
+        CsvFields.write(report, row.email());
+        report.write(',');
+        report.write(result.outcome.name());
+        report.write(',');
+        CsvFields.write(report, result.message);
+        report.write("\r\n");
+    }
+
+    private static final class Candidate {
+        private final int index;
+        private final ImportRow row;
+        private String hash;
+
+        private Candidate(int index, ImportRow row) {
+            this.index = index;
+            this.row = row;
+        }
+    }
+
+    private record Result(ImportOutcome outcome, String message) {
+    }
+}
@@ -0,0 +1,9 @@
+-- ids are handed out in blocks by Hibernate's pooled optimizer, each nextval reserves the next ${idBlockSize} values.
+-- re-applied whenever app.idBlockSize changes, hibernate.id.sequence.increment_size_mismatch_strategy=fix
+-- makes the entities follow the increment set here
+alter sequence user_sequence increment by ${idBlockSize};
+alter sequence role_sequence increment by ${idBlockSize};
+alter sequence token_sequence increment by ${idBlockSize};
+alter sequence refresh_token_sequence increment by ${idBlockSize};
+alter sequence outbox_email_sequence increment by ${idBlockSize};
+alter sequence token_revocation_sequence increment by ${idBlockSize};
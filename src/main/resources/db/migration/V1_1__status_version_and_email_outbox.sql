@@ -0,0 +1,21 @@
+-- added while the schema was still managed by ddl-auto=update, so a baselined database may or may not have them
+
+-- bumped whenever a user's password, email or status changes, access tokens carry the version they were issued with
+alter table users add column if not exists status_version bigint;
+
+-- emails are queued in the same transaction as the change that triggers them and sent by EmailOutboxWorker
+create sequence if not exists outbox_email_sequence start with 1 increment by 1;
+
+create table if not exists outbox_email (
+    id bigint not null,
+    recipient varchar(255) not null,
+    subject varchar(255) not null,
+    body text not null,
+    status varchar(255) not null check (status in ('PENDING', 'SENT', 'FAILED')),
+    attempts integer not null,
+    created_at timestamp(6) not null,
+    next_attempt_at timestamp(6) not null,
+    sent_at timestamp(6),
+    last_error varchar(1000),
+    primary key (id)
+);
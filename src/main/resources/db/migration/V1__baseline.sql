@@ -0,0 +1,58 @@
+-- schema as it was generated by spring.jpa.hibernate.ddl-auto=update before status versions and the email outbox,
+-- databases created that way are baselined at this version and skip this script
+
+create sequence user_sequence start with 1 increment by 1;
+create sequence role_sequence start with 1 increment by 1;
+create sequence token_sequence start with 1 increment by 1;
+create sequence refresh_token_sequence start with 1 increment by 1;
+
+create table users (
+    id bigint not null,
+    email varchar(255) not null unique,
+    password varchar(255) not null,
+    first_name varchar(255) not null,
+    last_name varchar(255) not null,
+    is_deleted boolean,
+    locked boolean,
+    enabled boolean,
+    primary key (id)
+);
+
+create table roles (
+    id bigint not null,
+    name varchar(255),
+    primary key (id)
+);
+
+create table users_roles (
+    user_id bigint not null,
+    roles_id bigint not null,
+    primary key (roles_id, user_id)
+);
+
+create table confirmation_token (
+    id bigint not null,
+    token varchar(255) not null,
+    local_date_time timestamp(6) not null,
+    expires_at timestamp(6) not null,
+    confirmed_at timestamp(6),
+    app_user_id bigint not null,
+    primary key (id)
+);
+
+create table refresh_token (
+    id bigint not null,
+    user_id bigint unique,
+    token varchar(255) not null unique,
+    expiry_date timestamp(6) with time zone not null,
+    primary key (id)
+);
+
+alter table users_roles
+    add constraint FKa62j07k5mhgifpp955h37ponj foreign key (roles_id) references roles;
+alter table users_roles
+    add constraint FK2o0jvgh89lemvvo17cbqvdxaa foreign key (user_id) references users;
+alter table confirmation_token
+    add constraint FKbcnap2kh2odaogu0jwb6yhubt foreign key (app_user_id) references users;
+alter table refresh_token
+    add constraint FKjtx87i0jvq2svedphegvdwcuy foreign key (user_id) references users;
@@ -0,0 +1,16 @@
+-- findByToken on the confirm and password-reset paths, covering so the lookup can be answered from the index
+create unique index confirmation_token_token_idx
+    on confirmation_token (token) include (id, app_user_id, expires_at, confirmed_at, local_date_time);
+
+-- foreign key side of ConfirmationToken.user, also used when users are deleted
+create index confirmation_token_app_user_id_idx on confirmation_token (app_user_id);
+
+-- expiry scans from the token purge job
+create index confirmation_token_expires_at_idx on confirmation_token (expires_at);
+create index refresh_token_expiry_date_idx on refresh_token (expiry_date);
+
+-- UserRepository.findByEmail compares lower(email), fails if two accounts differ only by case
+create unique index users_email_lower_idx on users (lower(email));
+
+-- EmailOutboxWorker polls for due pending emails
+create index outbox_email_pending_idx on outbox_email (next_attempt_at, id) where status = 'PENDING';
@@ -0,0 +1,3 @@
+-- progressive brute-force lockout, see AccountLockoutService
+alter table users add column failed_signin_attempts integer not null default 0;
+alter table users add column locked_until timestamp(6) with time zone;
@@ -0,0 +1,18 @@
+-- refresh tokens become one-time-use and are stored as SHA-256 digests, grouped into families (one per signin)
+-- so that replaying a used token can revoke every token issued from the same signin;
+-- rows holding plaintext tokens cannot be converted and the endpoint never issued any, so they are dropped
+delete from refresh_token;
+
+alter table refresh_token drop constraint refresh_token_user_id_key;
+alter table refresh_token drop constraint refresh_token_token_key;
+alter table refresh_token drop column token;
+
+alter table refresh_token add column token_hash bytea not null;
+alter table refresh_token add column family_id uuid not null;
+alter table refresh_token add column used_at timestamp(6) with time zone;
+alter table refresh_token add column revoked_at timestamp(6) with time zone;
+
+-- the rotation looks tokens up by digest only
+alter table refresh_token add constraint refresh_token_token_hash_key unique (token_hash);
+create index refresh_token_family_id_idx on refresh_token (family_id);
+create index refresh_token_user_id_idx on refresh_token (user_id);
@@ -0,0 +1,15 @@
+-- revoked access tokens and per-user revocation cutoffs, see TokenRevocationList
+create sequence token_revocation_sequence start with 1 increment by 1;
+
+create table token_revocation (
+    id bigint not null,
+    token_id varchar(255),
+    user_id bigint,
+    revoked_at timestamp(6) with time zone not null,
+    expires_at timestamp(6) with time zone not null,
+    primary key (id)
+);
+
+-- the periodic sync reads recent rows, the purge deletes expired ones
+create index token_revocation_revoked_at_idx on token_revocation (revoked_at);
+create index token_revocation_expires_at_idx on token_revocation (expires_at);
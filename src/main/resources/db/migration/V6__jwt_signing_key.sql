@@ -0,0 +1,9 @@
+-- the ES256 signing key ring shared by every instance, see SigningKeyRing
+create table jwt_signing_key (
+    kid varchar(255) not null,
+    private_key bytea not null,
+    public_key bytea not null,
+    active_from timestamp(6) with time zone not null,
+    created_at timestamp(6) with time zone not null,
+    primary key (kid)
+);
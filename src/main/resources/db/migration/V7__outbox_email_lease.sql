@@ -0,0 +1,8 @@
+-- EmailOutboxWorker claims emails by marking them SENDING with a lease in next_attempt_at and sends them after the
+-- claiming transaction commits; an email still SENDING once its lease ran out is claimed again
+alter table outbox_email drop constraint if exists outbox_email_status_check;
+alter table outbox_email add constraint outbox_email_status_check
+    check (status in ('PENDING', 'SENDING', 'SENT', 'FAILED'));
+
+drop index if exists outbox_email_pending_idx;
+create index outbox_email_pending_idx on outbox_email (next_attempt_at, id) where status in ('PENDING', 'SENDING');
@@ -0,0 +1,3 @@
+-- a password or email change is published to every instance as a row with user_id and the new status_version:
+-- that user's tokens carrying an older version are rejected, see TokenRevocationList
+alter table token_revocation add column status_version bigint;
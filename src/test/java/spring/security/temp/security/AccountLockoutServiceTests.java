@@ -0,0 +1,167 @@
+package spring.security.temp.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import spring.security.temp.email.EmailSender;
+import spring.security.temp.email.EmailTemplate;
+import spring.security.temp.models.FailedSignins;
+import spring.security.temp.models.User;
+import spring.security.temp.models.UserAccountChangedEvent;
+import spring.security.temp.repository.UserRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class AccountLockoutServiceTests {
+    private static final String EMAIL = "jane@example.com";
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserCache userCache = mock(UserCache.class);
+    private final EmailSender emailSender = mock(EmailSender.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Object> events = new ArrayList<>();
+    private AccountLockoutService lockoutService;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(userRepository.findByEmail(EMAIL)).thenAnswer(invocation -> Optional.of(user()));
+        lockoutService = new AccountLockoutService(userRepository, userCache, emailSender, events::add,
+                transactionTemplate, meterRegistry);
+        ReflectionTestUtils.setField(lockoutService, "threshold", 3);
+        ReflectionTestUtils.setField(lockoutService, "baseMs", 60_000L);
+        ReflectionTestUtils.setField(lockoutService, "maxMs", 240_000L);
+    }
+
+    // the signin may use any casing, the cache is keyed by the stored email
+    @Test
+    void failuresBelowTheThresholdOnlyEvictTheCachedUser() {
+        when(userRepository.incrementFailedSignins("JANE@example.com")).thenReturn(List.of(failedSignins(2)));
+
+        lockoutService.recordFailure("JANE@example.com");
+
+        verify(userCache).removeUserFromCache(EMAIL);
+        verify(userRepository, never()).lockUntil(anyString(), any());
+        verifyNoInteractions(emailSender);
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    void reachingTheThresholdLocksNotifiesAndPublishes() {
+        when(userRepository.incrementFailedSignins(EMAIL)).thenReturn(List.of(failedSignins(3)));
+
+        lockoutService.recordFailure(EMAIL);
+
+        verify(userRepository).lockUntil(anyString(), any());
+        verify(emailSender).send(EMAIL, EmailTemplate.ACCOUNT_LOCKED, Map.of("name", "Jane"));
+        assertThat(events).singleElement().isInstanceOfSatisfying(UserAccountChangedEvent.class,
+                event -> assertThat(event.email()).isEqualTo(EMAIL));
+        assertThat(meterRegistry.counter("signin.lockouts").count()).isEqualTo(1);
+        verify(userCache, never()).removeUserFromCache(anyString());
+    }
+
+    // every threshold-th failure locks again for twice as long, up to the maximum
+    @Test
+    void eachLockLastsTwiceAsLongUpToTheMaximum() {
+        assertThat(lockDurationAfter(3)).isEqualTo(Duration.ofMinutes(1));
+        assertThat(lockDurationAfter(6)).isEqualTo(Duration.ofMinutes(2));
+        assertThat(lockDurationAfter(9)).isEqualTo(Duration.ofMinutes(4));
+        assertThat(lockDurationAfter(12)).isEqualTo(Duration.ofMinutes(4));
+        assertThat(lockDurationAfter(300)).isEqualTo(Duration.ofMinutes(4));
+    }
+
+    @Test
+    void unknownEmailsChangeNothing() {
+        when(userRepository.incrementFailedSignins("ghost@example.com")).thenReturn(List.of());
+
+        lockoutService.recordFailure("ghost@example.com");
+
+        verify(userRepository, never()).lockUntil(anyString(), any());
+        verifyNoInteractions(userCache, emailSender);
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    void successResetsTheCountAndTheTimedLock() {
+        User user = user();
+        user.setFailedSigninAttempts(2);
+        user.setLockedUntil(Instant.now().minusSeconds(1));
+        when(userRepository.resetFailedSignins(42L)).thenReturn(1);
+
+        lockoutService.recordSuccess(user);
+
+        assertThat(user.getFailedSigninAttempts()).isZero();
+        assertThat(user.getLockedUntil()).isNull();
+        assertThat(events).singleElement().isInstanceOf(UserAccountChangedEvent.class);
+    }
+
+    // nothing to clear is the common signin, it must not publish an eviction every time
+    @Test
+    void successWithNothingToClearPublishesNothing() {
+        User user = user();
+        when(userRepository.resetFailedSignins(42L)).thenReturn(0);
+
+        lockoutService.recordSuccess(user);
+
+        assertThat(user.getFailedSigninAttempts()).isEqualTo(1);
+        assertThat(events).isEmpty();
+    }
+
+    // whole minutes: the service reads the clock a moment after this does
+    private Duration lockDurationAfter(int failedSignins) {
+        when(userRepository.incrementFailedSignins(EMAIL)).thenReturn(List.of(failedSignins(failedSignins)));
+        ArgumentCaptor<Instant> until = ArgumentCaptor.forClass(Instant.class);
+        Instant before = Instant.now();
+
+        lockoutService.recordFailure(EMAIL);
+
+        verify(userRepository, atLeastOnce()).lockUntil(anyString(), until.capture());
+        return Duration.ofMinutes(Duration.between(before, until.getValue()).toMinutes());
+    }
+
+    private static FailedSignins failedSignins(int count) {
+        return new FailedSignins() {
+            @Override
+            public String getEmail() {
+                return EMAIL;
+            }
+
+            @Override
+            public Integer getFailedSigninAttempts() {
+                return count;
+            }
+        };
+    }
+
+    private static User user() {
+        return User.builder()
+                .id(42L)
+                .email(EMAIL)
+                .firstName("Jane")
+                .lastName("Doe")
+                .failedSigninAttempts(1)
+                .build();
+    }
+}
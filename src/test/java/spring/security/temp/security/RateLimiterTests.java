@@ -0,0 +1,101 @@
+package spring.security.temp.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import spring.security.temp.exceptions.TooManyRequestsException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RateLimiterTests {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void allowsTheWholeBurstThenRejects() {
+        RateLimiter limiter = new RateLimiter("signin", 5, Duration.ofHours(1), 1_000, meterRegistry);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryAcquire("10.0.0.1")).isZero();
+        }
+        // the next permit is one interval (12 minutes) away
+        assertThat(limiter.tryAcquire("10.0.0.1"))
+                .isPositive()
+                .isLessThanOrEqualTo(Duration.ofMinutes(12).toNanos());
+    }
+
+    @Test
+    void keysHaveTheirOwnBuckets() {
+        RateLimiter limiter = new RateLimiter("signin", 1, Duration.ofHours(1), 1_000, meterRegistry);
+
+        assertThat(limiter.tryAcquire("10.0.0.1")).isZero();
+        assertThat(limiter.tryAcquire("10.0.0.1")).isPositive();
+        assertThat(limiter.tryAcquire("10.0.0.2")).isZero();
+    }
+
+    @Test
+    void permitsComeBackAfterTheInterval() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter("signin", 2, Duration.ofMillis(100), 1_000, meterRegistry);
+
+        assertThat(limiter.tryAcquire("10.0.0.1")).isZero();
+        assertThat(limiter.tryAcquire("10.0.0.1")).isZero();
+        long waitNanos = limiter.tryAcquire("10.0.0.1");
+        assertThat(waitNanos).isPositive();
+
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+        assertThat(limiter.tryAcquire("10.0.0.1")).isZero();
+    }
+
+    @Test
+    void acquireThrowsWithRetryAfterAndCountsTheRejection() {
+        RateLimiter limiter = new RateLimiter("signin", 1, Duration.ofMinutes(1), 1_000, meterRegistry);
+        limiter.acquire("10.0.0.1");
+
+        assertThatThrownBy(() -> limiter.acquire("10.0.0.1"))
+                .isInstanceOfSatisfying(TooManyRequestsException.class,
+                        e -> assertThat(e.getRetryAfterSeconds()).isBetween(1L, 60L));
+        assertThat(meterRegistry.get("ratelimit.rejected").tag("limiter", "signin").counter().count()).isEqualTo(1);
+    }
+
+    // the CAS loop must hand out exactly the burst, however the threads interleave
+    @Test
+    void concurrentCallersNeverExceedTheBurst() throws Exception {
+        int permits = 100;
+        int threads = 8;
+        int attemptsPerThread = 50;
+        RateLimiter limiter = new RateLimiter("signin", permits, Duration.ofHours(1), 1_000, meterRegistry);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    int allowed = 0;
+                    for (int i = 0; i < attemptsPerThread; i++) {
+                        if (limiter.tryAcquire("10.0.0.1") == 0) {
+                            allowed++;
+                        }
+                    }
+                    return allowed;
+                }));
+            }
+            start.countDown();
+            int allowed = 0;
+            for (Future<Integer> future : futures) {
+                allowed += future.get(10, TimeUnit.SECONDS);
+            }
+            assertThat(allowed).isEqualTo(permits);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package spring.security.temp.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import spring.security.temp.models.TokenRevocation;
+import spring.security.temp.models.User;
+import spring.security.temp.repository.TokenRevocationRepository;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenRevocationListTests {
+    private static final Long USER_ID = 42L;
+
+    private final TokenRevocationRepository repository = mock(TokenRevocationRepository.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final UserDetailsCache userDetailsCache = new UserDetailsCache(1_000, 60_000, new SimpleMeterRegistry());
+    private TokenRevocationList revocationList;
+
+    @BeforeEach
+    void setUp() {
+        when(repository.findActiveSince(any(), any())).thenReturn(List.of());
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(repository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        revocationList = new TokenRevocationList(repository, transactionTemplate, userDetailsCache,
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(revocationList, "expectedTokens", 1_000L);
+        ReflectionTestUtils.setField(revocationList, "jwtExpirationMs", 3_600_000L);
+        revocationList.load();
+    }
+
+    @Test
+    void revokedTokenIsRejectedOthersAreNot() {
+        VerifiedClaims revoked = claims("jti-1", Instant.now(), 0L);
+        revocationList.revokeToken(revoked);
+
+        assertThat(revocationList.isRevoked(revoked)).isTrue();
+        assertThat(revocationList.isRevoked(claims("jti-2", Instant.now(), 0L))).isFalse();
+        verify(repository).save(any(TokenRevocation.class));
+    }
+
+    @Test
+    void tokensWithoutAnIdCannotBeRevokedOneByOne() {
+        revocationList.revokeToken(claims(null, Instant.now(), 0L));
+
+        assertThat(revocationList.isRevoked(claims(null, Instant.now(), 0L))).isFalse();
+    }
+
+    @Test
+    void userCutoffRejectsTokensIssuedBeforeIt() {
+        Instant before = Instant.now().minusSeconds(1);
+        revocationList.revokeUsers(List.of(USER_ID));
+
+        assertThat(revocationList.isRevoked(claims("jti-1", before, 0L))).isTrue();
+        assertThat(revocationList.isRevoked(claims("jti-2", Instant.now().plusSeconds(1), 0L))).isFalse();
+        assertThat(revocationList.isRevoked(new VerifiedClaims("other@example.com", Instant.now().plusSeconds(60),
+                List.of(), 7L, 0L, "jti-3", before))).isFalse();
+    }
+
+    // iat is in whole seconds, a signin in the same second as the revocation must not be locked out
+    @Test
+    void cutoffIsComparedInWholeSeconds() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TokenRevocation>> saved = ArgumentCaptor.forClass(List.class);
+        revocationList.revokeUsers(List.of(USER_ID));
+        verify(repository).saveAll(saved.capture());
+        Instant second = saved.getValue().getFirst().getRevokedAt();
+
+        assertThat(second).isEqualTo(second.truncatedTo(ChronoUnit.SECONDS));
+        assertThat(revocationList.isRevoked(claims("jti-1", second, 0L))).isFalse();
+        assertThat(revocationList.isRevoked(claims("jti-2", second.minusSeconds(1), 0L))).isTrue();
+    }
+
+    @Test
+    void cutoffsWithMillisecondsAreTruncatedOnSync() {
+        Instant second = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        sync(userRevocation(second.plusMillis(999), null));
+
+        assertThat(revocationList.isRevoked(claims("jti-1", second, 0L))).isFalse();
+        assertThat(revocationList.isRevoked(claims("jti-2", second.minusSeconds(1), 0L))).isTrue();
+    }
+
+    @Test
+    void laterCutoffWinsOverAnEarlierOne() {
+        Instant now = Instant.now();
+        sync(userRevocation(now, null), userRevocation(now.minus(10, ChronoUnit.MINUTES), null));
+
+        assertThat(revocationList.isRevoked(claims("jti-1", now.minusSeconds(1), 0L))).isTrue();
+    }
+
+    @Test
+    void olderStatusVersionsAreRejected() {
+        revocationList.revokeVersionsBefore(USER_ID, 3L);
+
+        assertThat(revocationList.isRevoked(claims("jti-1", Instant.now(), 2L))).isTrue();
+        assertThat(revocationList.isRevoked(claims("jti-2", Instant.now(), null))).isTrue();
+        assertThat(revocationList.isRevoked(claims("jti-3", Instant.now(), 3L))).isFalse();
+        assertThat(revocationList.isRevoked(claims("jti-4", Instant.now(), 4L))).isFalse();
+    }
+
+    @Test
+    void statusVersionNeverMovesBack() {
+        Instant now = Instant.now();
+        sync(userRevocation(now, 5L), userRevocation(now, 3L));
+
+        assertThat(revocationList.isRevoked(claims("jti-1", now, 4L))).isTrue();
+    }
+
+    // a change made on another instance arrives through sync and drops the stale cached user here
+    @Test
+    void syncedRevocationsApplyAndEvictTheCachedUser() {
+        userDetailsCache.putUserInCache(User.builder().id(USER_ID).email("jane@example.com").build());
+        Instant now = Instant.now();
+
+        sync(userRevocation(now, 2L));
+
+        assertThat(revocationList.isRevoked(claims("jti-1", now, 1L))).isTrue();
+        assertThat(userDetailsCache.getUserFromCache("jane@example.com")).isNull();
+    }
+
+    @Test
+    void expiredEntriesAreDroppedOnSync() {
+        Instant past = Instant.now().minus(2, ChronoUnit.HOURS);
+        sync(new TokenRevocation(1L, "jti-1", null, past, past.plusSeconds(60), null),
+                new TokenRevocation(2L, null, USER_ID, past, past.plusSeconds(60), null),
+                new TokenRevocation(3L, null, USER_ID, past, past.plusSeconds(60), 9L));
+
+        assertThat(revocationList.isRevoked(claims("jti-1", past, 0L))).isFalse();
+        assertThat(revocationMap("revokedTokens")).isEmpty();
+        assertThat(revocationMap("revokedUsers")).isEmpty();
+        assertThat(revocationMap("currentVersions")).isEmpty();
+    }
+
+    // the filter is rebuilt from the tokens still revoked, so those keep being rejected
+    @Test
+    void rebuildKeepsLiveTokens() {
+        Instant now = Instant.now();
+        Object before = ReflectionTestUtils.getField(revocationList, "bloomFilter");
+
+        sync(new TokenRevocation(1L, "expired", null, now, now.minusSeconds(1), null),
+                new TokenRevocation(2L, "live", null, now, now.plusSeconds(3_600), null));
+
+        assertThat(ReflectionTestUtils.getField(revocationList, "bloomFilter")).isNotSameAs(before);
+        assertThat(revocationList.isRevoked(claims("live", now, 0L))).isTrue();
+        assertThat(revocationList.isRevoked(claims("expired", now, 0L))).isFalse();
+    }
+
+    @Test
+    void syncDeletesExpiredRows() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Consumer<TransactionStatus>> work = ArgumentCaptor.forClass(Consumer.class);
+
+        revocationList.sync();
+
+        // once from load(), once here
+        verify(transactionTemplate, times(2)).executeWithoutResult(work.capture());
+        work.getValue().accept(null);
+        verify(repository).deleteExpired(any());
+    }
+
+    private void sync(TokenRevocation... revocations) {
+        when(repository.findActiveSince(any(), any())).thenReturn(List.of(revocations));
+        revocationList.sync();
+    }
+
+    private Map<?, ?> revocationMap(String name) {
+        return (Map<?, ?>) ReflectionTestUtils.getField(revocationList, name);
+    }
+
+    private static TokenRevocation userRevocation(Instant revokedAt, Long statusVersion) {
+        return new TokenRevocation(null, null, USER_ID, revokedAt, revokedAt.plusSeconds(3_600), statusVersion);
+    }
+
+    private static VerifiedClaims claims(String tokenId, Instant issuedAt, Long statusVersion) {
+        return new VerifiedClaims("jane@example.com", issuedAt.plusSeconds(3_600), List.of(), USER_ID,
+                statusVersion, tokenId, issuedAt);
+    }
+}
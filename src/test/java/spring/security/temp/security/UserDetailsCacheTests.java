@@ -0,0 +1,115 @@
+package spring.security.temp.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import spring.security.temp.models.User;
+import spring.security.temp.models.UserAccountChangedEvent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UserDetailsCacheTests {
+    private final UserDetailsCache cache = new UserDetailsCache(1_000, 60_000, new SimpleMeterRegistry());
+
+    @Test
+    void loadsOnceAndServesEveryCasing() {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("Jane@Example.com", email -> {
+            loads.incrementAndGet();
+            return user(false);
+        });
+        User cached = cache.get("jane@example.com", email -> {
+            loads.incrementAndGet();
+            return user(false);
+        });
+
+        assertThat(loads).hasValue(1);
+        assertThat(cached.getEmail()).isEqualTo("jane@example.com");
+        assertThat(cache.getUserFromCache("JANE@EXAMPLE.COM")).isNotNull();
+    }
+
+    // AccountLockoutService updates the principal it was handed, the next request must not see that
+    @Test
+    void callersChangingTheirCopyLeaveTheCacheAlone() {
+        cache.putUserInCache(user(false));
+
+        User principal = (User) cache.getUserFromCache("jane@example.com");
+        principal.setFailedSigninAttempts(0);
+        principal.setLocked(true);
+        principal.getRoles().clear();
+
+        User next = (User) cache.getUserFromCache("jane@example.com");
+        assertThat(next).isNotSameAs(principal);
+        assertThat(next.getFailedSigninAttempts()).isEqualTo(3);
+        assertThat(next.isAccountNonLocked()).isTrue();
+    }
+
+    @Test
+    void unknownUsersAreNotCached() {
+        assertThatThrownBy(() -> cache.get("ghost@example.com", email -> {
+            throw new UsernameNotFoundException("Username not found");
+        })).isInstanceOf(UsernameNotFoundException.class);
+
+        assertThat(cache.getUserFromCache("ghost@example.com")).isNull();
+    }
+
+    // the lock is committed and its eviction published while the row read before it is still being loaded
+    @Test
+    void evictionDuringALoadRemovesWhatTheLoadRead() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<User> load = CompletableFuture.supplyAsync(() -> cache.get("jane@example.com", email -> {
+            loading.countDown();
+            await(release);
+            return user(false);
+        }));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<Void> evict = CompletableFuture.runAsync(() ->
+                cache.onUserAccountChanged(new UserAccountChangedEvent(42L, "jane@example.com", 1L)));
+        Thread.sleep(100);
+        release.countDown();
+        load.get(5, TimeUnit.SECONDS);
+        evict.get(5, TimeUnit.SECONDS);
+
+        assertThat(cache.getUserFromCache("jane@example.com")).isNull();
+        User reloaded = cache.get("jane@example.com", email -> user(true));
+        assertThat(reloaded.isAccountNonLocked()).isFalse();
+    }
+
+    @Test
+    void removeUserByIdDropsTheEntry() {
+        cache.putUserInCache(user(false));
+
+        cache.removeUserById(42L);
+
+        assertThat(cache.getUserFromCache("jane@example.com")).isNull();
+    }
+
+    private static User user(boolean locked) {
+        return User.builder()
+                .id(42L)
+                .email("jane@example.com")
+                .password("{bcrypt}$2a$10$hash")
+                .firstName("Jane")
+                .lastName("Doe")
+                .locked(locked)
+                .failedSigninAttempts(3)
+                .build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package spring.security.temp.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CsvFieldsTests {
+
+    @Test
+    void plainValuesAreWrittenAsIs() throws IOException {
+        assertThat(write("jane@example.com")).isEqualTo("jane@example.com");
+    }
+
+    @Test
+    void nullAndEmptyWriteNothing() throws IOException {
+        assertThat(write(null)).isEmpty();
+        assertThat(write("")).isEmpty();
+    }
+
+    @Test
+    void commasAreQuoted() throws IOException {
+        assertThat(write("Doe, Jane")).isEqualTo("\"Doe, Jane\"");
+    }
+
+    @Test
+    void quotesAreDoubled() throws IOException {
+        assertThat(write("Jane \"JD\" Doe")).isEqualTo("\"Jane \"\"JD\"\" Doe\"");
+    }
+
+    @Test
+    void lineBreaksAreQuoted() throws IOException {
+        assertThat(write("line one\nline two")).isEqualTo("\"line one\nline two\"");
+        assertThat(write("line one\r\nline two")).isEqualTo("\"line one\r\nline two\"");
+    }
+
+    @Test
+    void formulaPrefixesAreEscaped() throws IOException {
+        assertThat(write("=HYPERLINK(\"http://evil\")")).isEqualTo("\"'=HYPERLINK(\"\"http://evil\"\")\"");
+        assertThat(write("+1")).isEqualTo("\"'+1\"");
+        assertThat(write("-1")).isEqualTo("\"'-1\"");
+        assertThat(write("@SUM(A1)")).isEqualTo("\"'@SUM(A1)\"");
+        assertThat(write("\tcmd")).isEqualTo("\"'\tcmd\"");
+        assertThat(write("\rcmd")).isEqualTo("\"'\rcmd\"");
+    }
+
+    @Test
+    void formulaCharactersAfterTheFirstAreLeftAlone() throws IOException {
+        assertThat(write("a=b+c")).isEqualTo("a=b+c");
+    }
+
+    private static String write(String value) throws IOException {
+        StringWriter writer = new StringWriter();
+        CsvFields.write(writer, value);
+        return writer.toString();
+    }
+}
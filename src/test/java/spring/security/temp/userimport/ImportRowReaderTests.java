@@ -0,0 +1,132 @@
+package spring.security.temp.userimport;
+
+import org.junit.jupiter.api.Test;
+import spring.security.temp.exceptions.BadRequestException;
+import spring.security.temp.models.DataFormat;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class ImportRowReaderTests {
+    private static final String HEADER = "email,firstName,lastName,password\n";
+
+    @Test
+    void readsColumnsInHeaderOrder() throws IOException {
+        List<ImportRow> rows = csv("\uFEFFPassword, LastName ,email,firstname\r\n"
+                + "Secret1!,Doe, jane@example.com ,Jane\r\n");
+
+        assertThat(rows).containsExactly(new ImportRow(1, "jane@example.com", "Jane", "Doe", "Secret1!", null));
+    }
+
+    @Test
+    void quotedFieldsKeepCommas() throws IOException {
+        List<ImportRow> rows = csv(HEADER + "jane@example.com,\"Jane, Jr.\",Doe,Secret1!\n");
+
+        assertThat(rows.getFirst().firstName()).isEqualTo("Jane, Jr.");
+    }
+
+    @Test
+    void doubledQuotesAreUnescaped() throws IOException {
+        List<ImportRow> rows = csv(HEADER + "jane@example.com,\"Jane \"\"JD\"\"\",Doe,\"pa\"\"ss\"\n");
+
+        assertThat(rows.getFirst().firstName()).isEqualTo("Jane \"JD\"");
+        assertThat(rows.getFirst().password()).isEqualTo("pa\"ss");
+    }
+
+    @Test
+    void crlfEndsARecord() throws IOException {
+        List<ImportRow> rows = csv(HEADER.replace("\n", "\r\n")
+                + "jane@example.com,Jane,Doe,Secret1!\r\n"
+                + "john@example.com,John,Doe,Secret2!\r\n");
+
+        assertThat(rows).extracting(ImportRow::row, ImportRow::email, ImportRow::password)
+                .containsExactly(
+                        tuple(1L, "jane@example.com", "Secret1!"),
+                        tuple(2L, "john@example.com", "Secret2!"));
+    }
+
+    @Test
+    void quotedLineBreaksStayInTheField() throws IOException {
+        List<ImportRow> rows = csv(HEADER
+                + "jane@example.com,\"Jane\nMarie\",\"Doe\r\nSmith\",Secret1!\n"
+                + "john@example.com,John,Doe,Secret2!\n");
+
+        assertThat(rows).hasSize(2);
+        assertThat(rows.get(0).firstName()).isEqualTo("Jane\nMarie");
+        assertThat(rows.get(0).lastName()).isEqualTo("Doe\r\nSmith");
+        assertThat(rows.get(1).row()).isEqualTo(2);
+    }
+
+    @Test
+    void blankLinesAreSkipped() throws IOException {
+        List<ImportRow> rows = csv(HEADER + "\n\r\njane@example.com,Jane,Doe,Secret1!\n\n");
+
+        assertThat(rows).extracting(ImportRow::email).containsExactly("jane@example.com");
+    }
+
+    @Test
+    void passwordsAreNotTrimmed() throws IOException {
+        List<ImportRow> rows = csv(HEADER + "jane@example.com,Jane,Doe, Secret1! \n");
+
+        assertThat(rows.getFirst().password()).isEqualTo(" Secret1! ");
+    }
+
+    @Test
+    void shortRowsFailOnTheirOwn() throws IOException {
+        List<ImportRow> rows = csv(HEADER + "jane@example.com,Jane\njohn@example.com,John,Doe,Secret2!\n");
+
+        assertThat(rows.get(0).error()).isEqualTo("Expected 4 columns, found 2");
+        assertThat(rows.get(1).error()).isNull();
+        assertThat(rows.get(1).email()).isEqualTo("john@example.com");
+    }
+
+    @Test
+    void emptyUploadIsRejected() {
+        assertThatThrownBy(() -> csv("")).isInstanceOf(BadRequestException.class);
+    }
+
+    @Test
+    void missingColumnIsRejected() {
+        assertThatThrownBy(() -> csv("email,firstName,lastName\n"))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageContaining("password");
+    }
+
+    @Test
+    void malformedJsonLinesFailOnTheirOwn() throws IOException {
+        List<ImportRow> rows = read(DataFormat.NDJSON, """
+                {"email":" jane@example.com ","firstName":"Jane","lastName":"Doe","password":"Secret1!"}
+
+                {"email":
+                {"email":"john@example.com","firstName":"John","lastName":"Doe","password":"Secret2!"}
+                """);
+
+        assertThat(rows).hasSize(3);
+        assertThat(rows.get(0).email()).isEqualTo("jane@example.com");
+        assertThat(rows.get(1).error()).startsWith("Malformed JSON");
+        assertThat(rows.get(2).row()).isEqualTo(3);
+        assertThat(rows.get(2).email()).isEqualTo("john@example.com");
+    }
+
+    private static List<ImportRow> csv(String content) throws IOException {
+        return read(DataFormat.CSV, content);
+    }
+
+    private static List<ImportRow> read(DataFormat format, String content) throws IOException {
+        ImportRowReader reader = ImportRowReader.open(format,
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), JsonMapper.builder().build().reader());
+        List<ImportRow> rows = new ArrayList<>();
+        for (ImportRow row = reader.next(); row != null; row = reader.next()) {
+            rows.add(row);
+        }
+        return rows;
+    }
+}
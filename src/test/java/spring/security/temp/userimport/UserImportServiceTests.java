@@ -0,0 +1,210 @@
+package spring.security.temp.userimport;
+
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import spring.security.temp.email.EmailSender;
+import spring.security.temp.email.EmailTemplate;
+import spring.security.temp.models.DataFormat;
+import spring.security.temp.models.User;
+import spring.security.temp.repository.UserRepository;
+import spring.security.temp.token.ConfirmationTokenRepository;
+import spring.security.temp.token.ConfirmationTokenService;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserImportServiceTests {
+    private static final String HEADER = "email,firstName,lastName,password\n";
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final ConfirmationTokenRepository confirmationTokenRepository = mock(ConfirmationTokenRepository.class);
+    private final EmailSender emailSender = mock(EmailSender.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+    private final ForkJoinPool hashingPool = new ForkJoinPool(2);
+    // the emails of every batched user insert, in call order
+    private final List<List<String>> inserted = new ArrayList<>();
+    private UserImportService service;
+
+    @BeforeEach
+    void setUp() {
+        ConfirmationTokenService confirmationTokenService = mock(ConfirmationTokenService.class);
+        when(confirmationTokenService.confirmationLink(anyString())).thenReturn("http://localhost/confirm");
+        when(passwordEncoder.encode(any())).thenAnswer(invocation -> "hashed:" + invocation.getArgument(0));
+        when(userRepository.findExistingEmails(anyCollection())).thenReturn(List.of());
+        when(userRepository.saveAll(any())).thenAnswer(this::recordInsert);
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        service = new UserImportService(userRepository, confirmationTokenRepository, confirmationTokenService,
+                emailSender, transactionTemplate, Validation.buildDefaultValidatorFactory().getValidator(),
+                hashingPool, passwordEncoder, JsonMapper.builder().build());
+        ReflectionTestUtils.setField(service, "chunkSize", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        hashingPool.shutdownNow();
+    }
+
+    // one existence check and one batched insert per chunk, the last chunk may be short
+    @Test
+    void rowsAreImportedChunkByChunk() throws IOException {
+        List<String> report = importCsv(HEADER
+                + "a@example.com,Ann,Doe,Secret1!\n"
+                + "b@example.com,Ben,Doe,Secret2!\n"
+                + "c@example.com,Cid,Doe,Secret3!\n"
+                + "d@example.com,Dan,Doe,Secret4!\n"
+                + "e@example.com,Eve,Doe,Secret5!\n");
+
+        assertThat(inserted).containsExactly(
+                List.of("a@example.com", "b@example.com"),
+                List.of("c@example.com", "d@example.com"),
+                List.of("e@example.com"));
+        verify(userRepository, times(3)).findExistingEmails(anyCollection());
+        verify(confirmationTokenRepository, times(3)).saveAll(any());
+        verify(emailSender, times(5)).send(anyString(), eq(EmailTemplate.VERIFICATION), anyMap());
+        assertThat(report).containsExactly(
+                "row,email,outcome,message",
+                "1,a@example.com,CREATED,",
+                "2,b@example.com,CREATED,",
+                "3,c@example.com,CREATED,",
+                "4,d@example.com,CREATED,",
+                "5,e@example.com,CREATED,");
+    }
+
+    @Test
+    void passwordsAreHashedBeforeTheyAreStored() throws IOException {
+        List<User> saved = new ArrayList<>();
+        doAnswer(invocation -> {
+            invocation.<Iterable<User>>getArgument(0).forEach(saved::add);
+            return invocation.getArgument(0);
+        }).when(userRepository).saveAll(any());
+
+        importCsv(HEADER + "a@example.com,Ann,Doe,Secret1!\n");
+
+        assertThat(saved).extracting(User::getPassword).containsExactly("hashed:Secret1!");
+    }
+
+    // the lookup is case-insensitive, existing accounts are neither hashed nor inserted nor emailed
+    @Test
+    void existingEmailsAreSkipped() throws IOException {
+        when(userRepository.findExistingEmails(anyCollection())).thenAnswer(invocation ->
+                invocation.<Collection<String>>getArgument(0).contains("ben@example.com")
+                        ? List.of("ben@example.com") : List.of());
+
+        List<String> report = importCsv(HEADER
+                + "ann@example.com,Ann,Doe,Secret1!\n"
+                + "Ben@Example.com,Ben,Doe,Secret2!\n");
+
+        assertThat(inserted).containsExactly(List.of("ann@example.com"));
+        verify(passwordEncoder, never()).encode("Secret2!");
+        verify(emailSender, never()).send(eq("Ben@Example.com"), any(), anyMap());
+        assertThat(report).containsExactly(
+                "row,email,outcome,message",
+                "1,ann@example.com,CREATED,",
+                "2,Ben@Example.com,EXISTS,User with email already present");
+    }
+
+    @Test
+    void invalidAndRepeatedRowsAreNotInserted() throws IOException {
+        ReflectionTestUtils.setField(service, "chunkSize", 3);
+
+        List<String> report = importCsv(HEADER
+                + "ann@example.com,Ann,Doe,Secret1!\n"
+                + "not-an-email,Bob,Doe,Secret2!\n"
+                + "ANN@example.com,Ann,Again,Secret3!\n");
+
+        assertThat(inserted).containsExactly(List.of("ann@example.com"));
+        assertThat(report).containsExactly(
+                "row,email,outcome,message",
+                "1,ann@example.com,CREATED,",
+                "2,not-an-email,INVALID,Invalid email format",
+                "3,ANN@example.com,DUPLICATE,Repeats row 1");
+    }
+
+    // an email registered between the lookup and the insert fails the batch once, the retry leaves it out
+    @Test
+    void aConflictingInsertIsRetriedOnceWithoutTheTakenEmail() throws IOException {
+        when(userRepository.findExistingEmails(anyCollection()))
+                .thenReturn(List.of())
+                .thenReturn(List.of("ben@example.com"));
+        doThrow(new DataIntegrityViolationException("users_email_key"))
+                .doAnswer(this::recordInsert)
+                .when(userRepository).saveAll(any());
+
+        List<String> report = importCsv(HEADER
+                + "ann@example.com,Ann,Doe,Secret1!\n"
+                + "ben@example.com,Ben,Doe,Secret2!\n");
+
+        verify(transactionTemplate, times(2)).executeWithoutResult(any());
+        assertThat(inserted).containsExactly(List.of("ann@example.com"));
+        // hashed once, the retry reuses the hashes
+        verify(passwordEncoder, times(2)).encode(any());
+        assertThat(report).containsExactly(
+                "row,email,outcome,message",
+                "1,ann@example.com,CREATED,",
+                "2,ben@example.com,EXISTS,User with email already present");
+    }
+
+    @Test
+    void aChunkThatFailsTwiceIsReportedAsFailed() throws IOException {
+        doThrow(new DataIntegrityViolationException("users_email_key")).when(userRepository).saveAll(any());
+
+        List<String> report = importCsv(HEADER
+                + "ann@example.com,Ann,Doe,Secret1!\n"
+                + "ben@example.com,Ben,Doe,Secret2!\n");
+
+        verify(transactionTemplate, times(2)).executeWithoutResult(any());
+        assertThat(report).containsExactly(
+                "row,email,outcome,message",
+                "1,ann@example.com,FAILED,\"Could not be saved, retry the row\"",
+                "2,ben@example.com,FAILED,\"Could not be saved, retry the row\"");
+    }
+
+    private Object recordInsert(InvocationOnMock invocation) {
+        List<String> emails = new ArrayList<>();
+        invocation.<Iterable<User>>getArgument(0).forEach(user -> emails.add(user.getEmail()));
+        inserted.add(emails);
+        return invocation.getArgument(0);
+    }
+
+    private List<String> importCsv(String content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.importUsers(service.open(DataFormat.CSV,
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8))), out);
+        return out.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+}